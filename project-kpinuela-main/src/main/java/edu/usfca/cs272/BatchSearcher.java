@@ -0,0 +1,277 @@
+package edu.usfca.cs272;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import edu.usfca.cs272.InvertedIndex.Result;
+
+/**
+ * Searches many plain queries at once with a shared scan. The queries are
+ * grouped by the stems they use, the postings of each stem are looked up and
+ * read only once, and every document found is added to the counts of every
+ * query that uses the stem. The stems are split into ranges in sorted order,
+ * one for each worker, each worker keeps its own counts, and the counts of the
+ * workers are added together for each query at the end.
+ *
+ * Only the default scoring model is supported, since its score only depends on
+ * the total count and so does not change with the order the stems are read in.
+ *
+ * @author kyle
+ */
+public class BatchSearcher {
+	/**
+	 * most counts to keep at once across every query and worker
+	 */
+	public static final int BUDGET = 1 << 22;
+
+	/**
+	 * Searches every query with the default scoring model. Waits on the work
+	 * queue, so it must not be called from one of its workers.
+	 *
+	 * @param index   the index to search, which must not change until done
+	 * @param queries the stems of each query
+	 * @param exact   type of search
+	 * @param k       the most results to keep for each query, or 0 to keep all
+	 *                of them
+	 * @param queue   the work queue to scan with
+	 * @return the sorted results of each query, in the same order
+	 */
+	public static ArrayList<ArrayList<Result>> search(InvertedIndex index, List<Set<String>> queries, boolean exact,
+			int k, WorkQueue queue) {
+		DocumentTable documents = index.documents();
+		int workers = Math.max(1, queue.size());
+		int chunk = Math.max(1, BUDGET / Math.max(1, documents.size()) / workers);
+		ArrayList<ArrayList<Result>> results = new ArrayList<ArrayList<Result>>(queries.size());
+		for (int start = 0; start < queries.size(); start += chunk) {
+			List<Set<String>> batch = queries.subList(start, Math.min(queries.size(), start + chunk));
+			results.addAll(batch(index, batch, exact, k, queue, workers));
+		}
+		return results;
+	}
+
+	/**
+	 * Searches a batch of queries small enough for every worker to keep counts
+	 * for all of them.
+	 *
+	 * @param index   the index to search
+	 * @param queries the stems of each query
+	 * @param exact   type of search
+	 * @param k       the most results to keep for each query, or 0 to keep all
+	 *                of them
+	 * @param queue   the work queue to scan with
+	 * @param workers the number of ranges to split the stems into
+	 * @return the sorted results of each query, in the same order
+	 */
+	private static ArrayList<ArrayList<Result>> batch(InvertedIndex index, List<Set<String>> queries, boolean exact,
+			int k, WorkQueue queue, int workers) {
+		TreeMap<String, ArrayList<Integer>> users = new TreeMap<String, ArrayList<Integer>>();
+		for (int i = 0; i < queries.size(); i++) {
+			for (String stem : queries.get(i)) {
+				users.putIfAbsent(stem, new ArrayList<Integer>());
+				users.get(stem).add(i);
+			}
+		}
+		ArrayList<Stem> stems = new ArrayList<Stem>(users.size());
+		long total = 0;
+		for (Map.Entry<String, ArrayList<Integer>> entry : users.entrySet()) {
+			Stem stem = new Stem(index.lists(Collections.singleton(entry.getKey()), exact), entry.getValue());
+			stems.add(stem);
+			total += stem.cost;
+		}
+		int documents = index.documents().size();
+		Counts[][] counts = new Counts[workers][];
+		int from = 0;
+		long done = 0;
+		for (int w = 0; w < workers; w++) {
+			int to = from;
+			long goal = total * (w + 1) / workers;
+			while (to < stems.size() && (done < goal || w == workers - 1)) {
+				done += stems.get(to).cost;
+				to++;
+			}
+			Counts[] local = new Counts[queries.size()];
+			counts[w] = local;
+			List<Stem> range = stems.subList(from, to);
+			if (!range.isEmpty()) {
+				queue.execute(() -> scan(range, local, documents));
+			}
+			from = to;
+		}
+		queue.finish();
+		ArrayList<ArrayList<Result>> results = new ArrayList<ArrayList<Result>>(queries.size());
+		for (int i = 0; i < queries.size(); i++) {
+			results.add(null);
+		}
+		for (int w = 0; w < workers; w++) {
+			int first = w;
+			queue.execute(() -> {
+				for (int i = first; i < queries.size(); i += workers) {
+					results.set(i, collect(index.documents(), counts, i, k));
+				}
+			});
+		}
+		queue.finish();
+		return results;
+	}
+
+	/**
+	 * Reads the postings of a range of stems once each, adding every document
+	 * found to the counts of each query that uses the stem.
+	 *
+	 * @param range     the stems to read
+	 * @param counts    the counts of each query, filled in as they are needed
+	 * @param documents the number of documents in the index
+	 */
+	private static void scan(List<Stem> range, Counts[] counts, int documents) {
+		for (Stem stem : range) {
+			int[] queries = stem.queries;
+			for (int q : queries) {
+				if (counts[q] == null) {
+					counts[q] = new Counts(documents);
+				}
+			}
+			for (Postings postings : stem.lists) {
+				for (int i = 0; i < postings.size(); i++) {
+					int document = postings.document(i);
+					int frequency = postings.frequency(i);
+					for (int q : queries) {
+						counts[q].add(document, frequency);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds up the counts of every worker for one query and picks its results.
+	 *
+	 * @param documents the document table of the index
+	 * @param counts    the counts of each worker for each query
+	 * @param query     the query to collect
+	 * @param k         the most results to keep, or 0 to keep all of them
+	 * @return the sorted results of the query
+	 */
+	private static ArrayList<Result> collect(DocumentTable documents, Counts[][] counts, int query, int k) {
+		Counts sum = null;
+		for (Counts[] local : counts) {
+			Counts part = local[query];
+			if (part == null) {
+				continue;
+			}
+			if (sum == null) {
+				sum = part;
+			} else {
+				for (int i = 0; i < part.size; i++) {
+					int document = part.touched[i];
+					sum.add(document, part.counts[document]);
+				}
+			}
+		}
+		ArrayList<Result> results = new ArrayList<Result>();
+		if (sum == null) {
+			return results;
+		}
+		Scorer.Term term = Scorer.FREQUENCY.term(0, documents);
+		for (int i = 0; i < sum.size; i++) {
+			int document = sum.touched[i];
+			int count = sum.counts[document];
+			results.add(new Result(documents, document, count, term.score(0, count, count, documents.count(document))));
+		}
+		if (k > 0) {
+			return InvertedIndex.top(results, k);
+		}
+		Collections.sort(results);
+		return results;
+	}
+
+	/**
+	 * The postings of a stem and the queries that use it
+	 */
+	private static class Stem {
+		/**
+		 * the postings of every word the stem matches
+		 */
+		private final List<Postings> lists;
+
+		/**
+		 * the queries that use the stem
+		 */
+		private final int[] queries;
+
+		/**
+		 * number of postings to read
+		 */
+		private final long cost;
+
+		/**
+		 * Constructor method
+		 *
+		 * @param lists   the postings of every word the stem matches
+		 * @param queries the queries that use the stem
+		 */
+		public Stem(List<Postings> lists, List<Integer> queries) {
+			this.lists = lists;
+			this.queries = new int[queries.size()];
+			for (int i = 0; i < this.queries.length; i++) {
+				this.queries[i] = queries.get(i);
+			}
+			long cost = 0;
+			for (Postings postings : lists) {
+				cost += postings.size();
+			}
+			this.cost = cost * this.queries.length + 1;
+		}
+	}
+
+	/**
+	 * Counts of one query by document id, with the documents found so far
+	 */
+	private static class Counts {
+		/**
+		 * times the query words appear in each document
+		 */
+		private final int[] counts;
+
+		/**
+		 * documents with a count, in the order they were found
+		 */
+		private int[] touched;
+
+		/**
+		 * number of documents with a count
+		 */
+		private int size;
+
+		/**
+		 * Constructor method
+		 *
+		 * @param documents the number of documents in the index
+		 */
+		public Counts(int documents) {
+			this.counts = new int[documents];
+			this.touched = new int[16];
+			this.size = 0;
+		}
+
+		/**
+		 * Adds to the count of a document.
+		 *
+		 * @param document  the document id
+		 * @param frequency times a query word appears in it
+		 */
+		public void add(int document, int frequency) {
+			if (counts[document] == 0) {
+				if (size == touched.length) {
+					touched = Arrays.copyOf(touched, size * 2);
+				}
+				touched[size++] = document;
+			}
+			counts[document] += frequency;
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Writes an index in a compact binary format that {@link MappedInvertedIndex}
+ * can search straight from a memory-mapped file. Every number is a big-endian
+ * {@code int}, and the file is laid out as:
+ *
+ * <pre>
+ * header           MAGIC, VERSION, documents, terms, postings, string bytes, position bytes
+ * counts           word count of each document
+ * locations        offset of each location in the strings, plus the end
+ * words            offset of each word in the strings, plus the end
+ * offsets          start of each word's postings, plus the end
+ * document ids     document id of every posting, back to back
+ * frequencies      frequency of every posting, back to back
+ * position offsets offset of every posting's positions, plus the end
+ * strings          UTF-8 locations in document id order, then words in sorted order
+ * positions        encoded positions of every posting, back to back
+ * </pre>
+ *
+ * @author kyle
+ */
+public class BinaryIndexWriter {
+	/** Marks the start of an index file. */
+	public static final int MAGIC = 0x53494458;
+
+	/** Version of the file format. */
+	public static final int VERSION = 1;
+
+	/** Number of ints in the header. */
+	public static final int HEADER = 7;
+
+	/**
+	 * Writes the index to a file in the binary format.
+	 *
+	 * @param terms     words of the index mapped to their postings, in sorted order
+	 * @param documents document table of the index
+	 * @param path      the file to write to
+	 * @throws IOException if an IO error occurs or the index is too large
+	 */
+	public static void write(Map<String, ? extends Postings> terms, DocumentTable documents, Path path)
+			throws IOException {
+		int size = documents.size();
+		byte[][] locations = new byte[size][];
+		long strings = 0;
+		for (int i = 0; i < size; i++) {
+			locations[i] = documents.location(i).getBytes(StandardCharsets.UTF_8);
+			strings += locations[i].length;
+		}
+		byte[][] words = new byte[terms.size()][];
+		ArrayList<Postings> lists = new ArrayList<Postings>(words.length);
+		long postings = 0;
+		long positions = 0;
+		int word = 0;
+		for (Entry<String, ? extends Postings> entry : terms.entrySet()) {
+			words[word] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+			strings += words[word++].length;
+			Postings list = entry.getValue();
+			lists.add(list);
+			postings += list.size();
+			for (int i = 0; i < list.size(); i++) {
+				positions += list.positions(i).encodedLength();
+			}
+		}
+		long total = 4L * (HEADER + size + size + 1 + 2 * (words.length + 1) + 3 * postings + 1) + strings + positions;
+		if (total > Integer.MAX_VALUE) {
+			throw new IOException("Index is too large to save: " + total + " bytes");
+		}
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt(size);
+			buffer.putInt(words.length);
+			buffer.putInt((int) postings);
+			buffer.putInt((int) strings);
+			buffer.putInt((int) positions);
+			for (int i = 0; i < size; i++) {
+				putInt(channel, buffer, documents.count(i));
+			}
+			int offset = 0;
+			for (int i = 0; i < size; i++) {
+				putInt(channel, buffer, offset);
+				offset += locations[i].length;
+			}
+			putInt(channel, buffer, offset);
+			for (int i = 0; i < words.length; i++) {
+				putInt(channel, buffer, offset);
+				offset += words[i].length;
+			}
+			putInt(channel, buffer, offset);
+			offset = 0;
+			for (Postings list : lists) {
+				putInt(channel, buffer, offset);
+				offset += list.size();
+			}
+			putInt(channel, buffer, offset);
+			for (Postings list : lists) {
+				for (int i = 0; i < list.size(); i++) {
+					putInt(channel, buffer, list.document(i));
+				}
+			}
+			for (Postings list : lists) {
+				for (int i = 0; i < list.size(); i++) {
+					putInt(channel, buffer, list.frequency(i));
+				}
+			}
+			offset = 0;
+			for (Postings list : lists) {
+				for (int i = 0; i < list.size(); i++) {
+					putInt(channel, buffer, offset);
+					offset += list.positions(i).encodedLength();
+				}
+			}
+			putInt(channel, buffer, offset);
+			for (byte[] location : locations) {
+				putBytes(channel, buffer, location);
+			}
+			for (byte[] bytes : words) {
+				putBytes(channel, buffer, bytes);
+			}
+			for (Postings list : lists) {
+				for (int i = 0; i < list.size(); i++) {
+					PositionList encoded = list.positions(i);
+					if (buffer.remaining() < encoded.encodedLength()) {
+						flush(channel, buffer);
+					}
+					if (buffer.remaining() < encoded.encodedLength()) {
+						ByteBuffer large = ByteBuffer.allocate(encoded.encodedLength());
+						encoded.writeTo(large);
+						flush(channel, large);
+					} else {
+						encoded.writeTo(buffer);
+					}
+				}
+			}
+			flush(channel, buffer);
+		}
+	}
+
+	/**
+	 * Adds an int to the buffer, writing the buffer out first if it is full.
+	 *
+	 * @param channel the channel to write to
+	 * @param buffer  the buffer
+	 * @param value   the int to add
+	 * @throws IOException if an IO error occurs
+	 */
+	private static void putInt(FileChannel channel, ByteBuffer buffer, int value) throws IOException {
+		if (buffer.remaining() < 4) {
+			flush(channel, buffer);
+		}
+		buffer.putInt(value);
+	}
+
+	/**
+	 * Adds bytes to the buffer, writing the buffer out whenever it is full.
+	 *
+	 * @param channel the channel to write to
+	 * @param buffer  the buffer
+	 * @param bytes   the bytes to add
+	 * @throws IOException if an IO error occurs
+	 */
+	private static void putBytes(FileChannel channel, ByteBuffer buffer, byte[] bytes) throws IOException {
+		int offset = 0;
+		while (offset < bytes.length) {
+			if (!buffer.hasRemaining()) {
+				flush(channel, buffer);
+			}
+			int length = Math.min(buffer.remaining(), bytes.length - offset);
+			buffer.put(bytes, offset, length);
+			offset += length;
+		}
+	}
+
+	/**
+	 * Writes out everything in the buffer and clears it.
+	 *
+	 * @param channel the channel to write to
+	 * @param buffer  the buffer
+	 * @throws IOException if an IO error occurs
+	 */
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+}
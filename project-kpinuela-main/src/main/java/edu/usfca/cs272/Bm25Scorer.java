@@ -0,0 +1,49 @@
+package edu.usfca.cs272;
+
+/**
+ * Okapi BM25. The score of a word grows with how often it appears in the
+ * document but levels off, is scaled down in documents longer than average,
+ * and is weighted by the inverse document frequency
+ * {@code ln(1 + (documents - matches + 0.5) / (matches + 0.5))}, which is never
+ * negative.
+ *
+ * @author kyle
+ */
+public class Bm25Scorer implements Scorer {
+	/** The default term frequency saturation. */
+	public static final double K1 = 1.2;
+
+	/** The default length normalization. */
+	public static final double B = 0.75;
+
+	/**
+	 * How quickly the score of a word levels off as it appears more often
+	 */
+	private final double k1;
+
+	/**
+	 * How much the length of a document scales its score, from 0 to 1
+	 */
+	private final double b;
+
+	/**
+	 * Constructor method
+	 *
+	 * @param k1 term frequency saturation; usually between 1.2 and 2
+	 * @param b  length normalization; 0 for none, 1 for full
+	 */
+	public Bm25Scorer(double k1, double b) {
+		this.k1 = k1;
+		this.b = b;
+	}
+
+	@Override
+	public Term term(int matches, DocumentTable documents) {
+		int size = documents.size();
+		double idf = Math.log(1 + (size - matches + 0.5) / (matches + 0.5));
+		double weight = idf * (k1 + 1);
+		double fixed = k1 * (1 - b);
+		double scaled = k1 * b / Math.max(documents.average(), 1);
+		return (score, count, frequency, length) -> score + weight * frequency / (frequency + fixed + scaled * length);
+	}
+}
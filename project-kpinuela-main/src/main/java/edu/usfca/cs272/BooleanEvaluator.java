@@ -0,0 +1,439 @@
+package edu.usfca.cs272;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import edu.usfca.cs272.InvertedIndex.Result;
+
+/**
+ * Runs a {@link BooleanQuery} one document at a time over a tree of iterators.
+ * Each stem is an iterator over its postings, and groups combine their clauses:
+ * required clauses are intersected starting from the one with the fewest
+ * documents, with the others leapfrogging forward to its next document,
+ * optional clauses are only looked at for the documents that pass, and
+ * excluded clauses are checked last. Moving forward is a galloping search over
+ * the sorted document ids, so long lists are skipped over instead of read.
+ *
+ * @author kyle
+ */
+public class BooleanEvaluator {
+	/** The document of an iterator that has run out. */
+	public static final int NONE = Integer.MAX_VALUE;
+
+	/**
+	 * Finds every result of a query without sorting them.
+	 *
+	 * @param index  the index to search
+	 * @param query  the query
+	 * @param exact  whether stems match whole words or every word they start
+	 * @param scorer how to score the results
+	 * @return array list of Results in no particular order
+	 */
+	public static ArrayList<Result> search(InvertedIndex index, BooleanQuery query, boolean exact, Scorer scorer) {
+		ArrayList<Result> results = new ArrayList<Result>();
+		DocumentTable documents = index.documents();
+		Node root = node(index, query, exact, scorer);
+		Score score = new Score();
+		for (int document = root.advance(0); document != NONE; document = root.advance(document + 1)) {
+			score.count = 0;
+			score.score = 0;
+			score.length = documents.count(document);
+			root.collect(document, score);
+			results.add(new Result(documents, document, score.count, score.score));
+		}
+		return results;
+	}
+
+	/**
+	 * Builds the iterator for a clause.
+	 *
+	 * @param index  the index to search
+	 * @param query  the clause
+	 * @param exact  whether stems match whole words or every word they start
+	 * @param scorer how to score the results
+	 * @return the iterator over the documents the clause matches
+	 */
+	private static Node node(InvertedIndex index, BooleanQuery query, boolean exact, Scorer scorer) {
+		String term = query.getTerm();
+		DocumentTable documents = index.documents();
+		if (term != null) {
+			ArrayList<Node> leaves = new ArrayList<Node>();
+			if (term.indexOf(' ') >= 0) {
+				leaves.add(new Leaf(index.phrase(term.split(" ")), documents, scorer));
+			} else if (exact) {
+				Postings postings = index.postings(term);
+				leaves.add(new Leaf(postings == null ? new PostingList() : postings, documents, scorer));
+			} else {
+				for (Postings postings : index.prefix(term)) {
+					leaves.add(new Leaf(postings, documents, scorer));
+				}
+			}
+			return leaves.size() == 1 ? leaves.get(0) : new Or(leaves);
+		}
+		ArrayList<Node> must = nodes(index, query.getMust(), exact, scorer);
+		ArrayList<Node> should = nodes(index, query.getShould(), exact, scorer);
+		ArrayList<Node> mustNot = nodes(index, query.getMustNot(), exact, scorer);
+		if (must.isEmpty()) {
+			return new Group(new Or(should), new ArrayList<Node>(), mustNot);
+		}
+		return new Group(must.size() == 1 ? must.get(0) : new And(must), should, mustNot);
+	}
+
+	/**
+	 * Builds the iterators for several clauses.
+	 *
+	 * @param index   the index to search
+	 * @param clauses the clauses
+	 * @param exact   whether stems match whole words or every word they start
+	 * @param scorer  how to score the results
+	 * @return the iterators, in the same order
+	 */
+	private static ArrayList<Node> nodes(InvertedIndex index, Iterable<BooleanQuery> clauses, boolean exact,
+			Scorer scorer) {
+		ArrayList<Node> nodes = new ArrayList<Node>();
+		for (BooleanQuery clause : clauses) {
+			nodes.add(node(index, clause, exact, scorer));
+		}
+		return nodes;
+	}
+
+	/**
+	 * The count and score of the document being collected
+	 */
+	private static class Score {
+		/**
+		 * times the query words appear in the document
+		 */
+		private int count;
+
+		/**
+		 * score of the document so far
+		 */
+		private double score;
+
+		/**
+		 * word count of the document
+		 */
+		private int length;
+	}
+
+	/**
+	 * Iterates over the documents a clause matches in increasing order
+	 */
+	private abstract static class Node {
+		/**
+		 * the current document, or {@link BooleanEvaluator#NONE} once done
+		 */
+		protected int document = -1;
+
+		/**
+		 * Moves to the first matching document at or after a target.
+		 *
+		 * @param target the document id to move to
+		 * @return the new current document, or {@link BooleanEvaluator#NONE}
+		 */
+		public abstract int advance(int target);
+
+		/**
+		 * Adds the words found in the current document to its score.
+		 *
+		 * @param target the current document
+		 * @param score  the score to add to
+		 */
+		public abstract void collect(int target, Score score);
+
+		/**
+		 * Returns the most documents this clause can match.
+		 *
+		 * @return the upper bound on matching documents
+		 */
+		public abstract long cost();
+	}
+
+	/**
+	 * Iterates over the postings of a single word or phrase
+	 */
+	private static class Leaf extends Node {
+		/**
+		 * the postings
+		 */
+		private final Postings postings;
+
+		/**
+		 * how to score the postings
+		 */
+		private final Scorer.Term term;
+
+		/**
+		 * index of the current document in the postings
+		 */
+		private int cursor;
+
+		/**
+		 * Constructor method
+		 *
+		 * @param postings  the postings
+		 * @param documents the document table of the index
+		 * @param scorer    how to score the postings
+		 */
+		public Leaf(Postings postings, DocumentTable documents, Scorer scorer) {
+			this.postings = postings;
+			this.term = scorer.term(postings.size(), documents);
+			this.cursor = 0;
+		}
+
+		@Override
+		public int advance(int target) {
+			if (document >= target) {
+				return document;
+			}
+			cursor = postings.advance(target, cursor);
+			document = cursor < postings.size() ? postings.document(cursor) : NONE;
+			return document;
+		}
+
+		@Override
+		public void collect(int target, Score score) {
+			int frequency = postings.frequency(cursor);
+			score.count += frequency;
+			score.score = term.score(score.score, score.count, frequency, score.length);
+		}
+
+		@Override
+		public long cost() {
+			return postings.size();
+		}
+	}
+
+	/**
+	 * Matches documents any of several clauses match. The clauses are kept in a
+	 * heap by their current document, so moving forward and scoring only touch
+	 * the clauses on the smallest document instead of every clause, which
+	 * matters for prefixes that expand to many words.
+	 */
+	private static class Or extends Node {
+		/**
+		 * the clauses
+		 */
+		private final Node[] nodes;
+
+		/**
+		 * the clauses that have not run out, with the smallest document on top
+		 */
+		private final PriorityQueue<Clause> heap;
+
+		/**
+		 * the clauses taken off the heap to score the current document
+		 */
+		private final ArrayList<Clause> current;
+
+		/**
+		 * Constructor method
+		 *
+		 * @param nodes the clauses
+		 */
+		public Or(List<Node> nodes) {
+			this.nodes = nodes.toArray(new Node[0]);
+			this.heap = new PriorityQueue<Clause>(Math.max(1, this.nodes.length));
+			this.current = new ArrayList<Clause>();
+			for (int i = 0; i < this.nodes.length; i++) {
+				heap.add(new Clause(this.nodes[i], i));
+			}
+		}
+
+		@Override
+		public int advance(int target) {
+			if (document >= target) {
+				return document;
+			}
+			while (!heap.isEmpty() && heap.peek().node.document < target) {
+				Clause clause = heap.poll();
+				if (clause.node.advance(target) != NONE) {
+					heap.add(clause);
+				}
+			}
+			document = heap.isEmpty() ? NONE : heap.peek().node.document;
+			return document;
+		}
+
+		/**
+		 * Scores the clauses on the current document in the order they were given,
+		 * which is the order they come off the heap in.
+		 */
+		@Override
+		public void collect(int target, Score score) {
+			while (!heap.isEmpty() && heap.peek().node.document == target) {
+				Clause clause = heap.poll();
+				clause.node.collect(target, score);
+				current.add(clause);
+			}
+			heap.addAll(current);
+			current.clear();
+		}
+
+		@Override
+		public long cost() {
+			long cost = 0;
+			for (Node node : nodes) {
+				cost += node.cost();
+			}
+			return cost;
+		}
+	}
+
+	/**
+	 * A clause of an {@link Or} ordered by its current document, then by where
+	 * it was given
+	 */
+	private static class Clause implements Comparable<Clause> {
+		/**
+		 * the clause
+		 */
+		private final Node node;
+
+		/**
+		 * where the clause was given among the others
+		 */
+		private final int order;
+
+		/**
+		 * Constructor method
+		 *
+		 * @param node  the clause
+		 * @param order where the clause was given among the others
+		 */
+		public Clause(Node node, int order) {
+			this.node = node;
+			this.order = order;
+		}
+
+		@Override
+		public int compareTo(Clause other) {
+			int compare = Integer.compare(node.document, other.node.document);
+			return compare != 0 ? compare : Integer.compare(order, other.order);
+		}
+	}
+
+	/**
+	 * Matches documents every one of several clauses match, moving the clause
+	 * with the fewest documents first and the others up to it
+	 */
+	private static class And extends Node {
+		/**
+		 * the clauses, from the fewest documents to the most
+		 */
+		private final Node[] nodes;
+
+		/**
+		 * Constructor method
+		 *
+		 * @param nodes the clauses
+		 */
+		public And(List<Node> nodes) {
+			this.nodes = nodes.toArray(new Node[0]);
+			Arrays.sort(this.nodes, (a, b) -> Long.compare(a.cost(), b.cost()));
+		}
+
+		@Override
+		public int advance(int target) {
+			if (document >= target) {
+				return document;
+			}
+			int candidate = nodes[0].advance(target);
+			int i = 1;
+			while (candidate != NONE && i < nodes.length) {
+				int found = nodes[i].advance(candidate);
+				if (found == candidate) {
+					i++;
+				} else {
+					candidate = nodes[0].advance(found);
+					i = 1;
+				}
+			}
+			document = candidate;
+			return document;
+		}
+
+		@Override
+		public void collect(int target, Score score) {
+			for (Node node : nodes) {
+				node.collect(target, score);
+			}
+		}
+
+		@Override
+		public long cost() {
+			return nodes[0].cost();
+		}
+	}
+
+	/**
+	 * Matches the documents of the required clauses that none of the excluded
+	 * clauses match, adding in the optional clauses found in them
+	 */
+	private static class Group extends Node {
+		/**
+		 * the required clauses, or every optional clause if none are required
+		 */
+		private final Node required;
+
+		/**
+		 * the optional clauses when some are required
+		 */
+		private final Node[] optional;
+
+		/**
+		 * the excluded clauses
+		 */
+		private final Node[] excluded;
+
+		/**
+		 * Constructor method
+		 *
+		 * @param required the required clauses
+		 * @param optional optional clauses only used to score
+		 * @param excluded the excluded clauses
+		 */
+		public Group(Node required, List<Node> optional, List<Node> excluded) {
+			this.required = required;
+			this.optional = optional.toArray(new Node[0]);
+			this.excluded = excluded.toArray(new Node[0]);
+		}
+
+		@Override
+		public int advance(int target) {
+			if (document >= target) {
+				return document;
+			}
+			int candidate = required.advance(target);
+			candidates: while (candidate != NONE) {
+				for (Node node : excluded) {
+					if (node.advance(candidate) == candidate) {
+						candidate = required.advance(candidate + 1);
+						continue candidates;
+					}
+				}
+				break;
+			}
+			document = candidate;
+			return document;
+		}
+
+		@Override
+		public void collect(int target, Score score) {
+			required.collect(target, score);
+			for (Node node : optional) {
+				if (node.advance(target) == target) {
+					node.collect(target, score);
+				}
+			}
+		}
+
+		@Override
+		public long cost() {
+			return required.cost();
+		}
+	}
+}
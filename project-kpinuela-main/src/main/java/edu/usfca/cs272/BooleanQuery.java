@@ -0,0 +1,288 @@
+package edu.usfca.cs272;
+
+import static opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM.ENGLISH;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import opennlp.tools.stemmer.Stemmer;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
+/**
+ * A parsed boolean query. Each clause is a stem, a phrase in double quotes or a
+ * group in parentheses, and is either required with a leading {@code +},
+ * excluded with a leading {@code -} or optional. A document matches if it has
+ * every required clause and no excluded one, and when there are no required
+ * clauses it also needs at least one optional clause. Every stem of a required
+ * or optional clause found in a document adds to its count.
+ *
+ * Clauses are kept sorted and without duplicates, the same as the stems of a
+ * plain query, so the same query always comes out the same.
+ *
+ * @author kyle
+ */
+public class BooleanQuery {
+	/**
+	 * Matches a line that uses any of the operators
+	 */
+	private static final Pattern OPERATORS = Pattern.compile("(^|\\s)[+-]|[()]");
+
+	/**
+	 * The stem or phrase of a single clause, or null for a group
+	 */
+	private final String term;
+
+	/**
+	 * Required clauses by how they are written
+	 */
+	private final TreeMap<String, BooleanQuery> must;
+
+	/**
+	 * Optional clauses by how they are written
+	 */
+	private final TreeMap<String, BooleanQuery> should;
+
+	/**
+	 * Excluded clauses by how they are written
+	 */
+	private final TreeMap<String, BooleanQuery> mustNot;
+
+	/**
+	 * Creates an empty group.
+	 */
+	public BooleanQuery() {
+		this(null);
+	}
+
+	/**
+	 * Creates a single clause.
+	 *
+	 * @param term the stem, or the stems of a phrase joined by single spaces
+	 */
+	public BooleanQuery(String term) {
+		this.term = term;
+		this.must = new TreeMap<String, BooleanQuery>();
+		this.should = new TreeMap<String, BooleanQuery>();
+		this.mustNot = new TreeMap<String, BooleanQuery>();
+	}
+
+	/**
+	 * Checks whether a query line uses any operators. Lines that do not are
+	 * searched as plain queries.
+	 *
+	 * @param line the query line
+	 * @return true if the line has a {@code +} or {@code -} at the start of a
+	 *         word, or any parentheses
+	 */
+	public static boolean isBoolean(String line) {
+		return OPERATORS.matcher(line).find();
+	}
+
+	/**
+	 * Parses a query line. Words are cleaned and stemmed the same way as a plain
+	 * query, unmatched parentheses and quotes are ignored, and clauses that stem
+	 * to nothing are dropped.
+	 *
+	 * @param line the query line
+	 * @return the parsed query
+	 */
+	public static BooleanQuery parse(String line) {
+		return new Parser(line).group(false);
+	}
+
+	/**
+	 * Returns the stem or phrase of a single clause.
+	 *
+	 * @return the stem or phrase, or null if this is a group
+	 */
+	public String getTerm() {
+		return term;
+	}
+
+	/**
+	 * Returns the required clauses.
+	 *
+	 * @return the required clauses in sorted order
+	 */
+	public Collection<BooleanQuery> getMust() {
+		return must.values();
+	}
+
+	/**
+	 * Returns the optional clauses.
+	 *
+	 * @return the optional clauses in sorted order
+	 */
+	public Collection<BooleanQuery> getShould() {
+		return should.values();
+	}
+
+	/**
+	 * Returns the excluded clauses.
+	 *
+	 * @return the excluded clauses in sorted order
+	 */
+	public Collection<BooleanQuery> getMustNot() {
+		return mustNot.values();
+	}
+
+	/**
+	 * Checks whether this is an empty group.
+	 *
+	 * @return true if this group has no clauses
+	 */
+	public boolean isEmpty() {
+		return term == null && must.isEmpty() && should.isEmpty() && mustNot.isEmpty();
+	}
+
+	/**
+	 * Adds a clause to this group.
+	 *
+	 * @param operator {@code +}, {@code -} or 0 for an optional clause
+	 * @param clause   the clause to add
+	 */
+	public void add(char operator, BooleanQuery clause) {
+		TreeMap<String, BooleanQuery> clauses = operator == '+' ? must : operator == '-' ? mustNot : should;
+		clauses.putIfAbsent(clause.clause(), clause);
+	}
+
+	/**
+	 * Writes this query the way it appears as a clause of another, in
+	 * parentheses if it is a group.
+	 *
+	 * @return the clause as it is written
+	 */
+	private String clause() {
+		return term == null ? "(" + toString() + ")" : toString();
+	}
+
+	/**
+	 * Writes the query back out with required clauses first, then optional and
+	 * then excluded ones, phrases in quotes and groups in parentheses.
+	 */
+	@Override
+	public String toString() {
+		if (term != null) {
+			return term.indexOf(' ') >= 0 ? "\"" + term + "\"" : term;
+		}
+		StringJoiner joiner = new StringJoiner(" ");
+		for (String clause : must.keySet()) {
+			joiner.add("+" + clause);
+		}
+		for (String clause : should.keySet()) {
+			joiner.add(clause);
+		}
+		for (String clause : mustNot.keySet()) {
+			joiner.add("-" + clause);
+		}
+		return joiner.toString();
+	}
+
+	/**
+	 * Reads a query line one clause at a time
+	 */
+	private static class Parser {
+		/**
+		 * the query line
+		 */
+		private final String line;
+
+		/**
+		 * the stemmer to use
+		 */
+		private final Stemmer stemmer;
+
+		/**
+		 * index of the next character to read
+		 */
+		private int index;
+
+		/**
+		 * Constructor method
+		 *
+		 * @param line the query line
+		 */
+		public Parser(String line) {
+			this.line = line;
+			this.stemmer = new SnowballStemmer(ENGLISH);
+			this.index = 0;
+		}
+
+		/**
+		 * Reads clauses up to the end of a group.
+		 *
+		 * @param nested whether a closing parenthesis ends the group
+		 * @return the group
+		 */
+		public BooleanQuery group(boolean nested) {
+			BooleanQuery group = new BooleanQuery();
+			while (index < line.length()) {
+				char c = line.charAt(index);
+				if (Character.isWhitespace(c)) {
+					index++;
+					continue;
+				}
+				if (c == ')') {
+					index++;
+					if (nested) {
+						return group;
+					}
+					continue;
+				}
+				char operator = 0;
+				if (c == '+' || c == '-') {
+					operator = c;
+					index++;
+					if (index == line.length()) {
+						break;
+					}
+					c = line.charAt(index);
+				}
+				BooleanQuery clause;
+				if (c == '(') {
+					index++;
+					clause = group(true);
+					if (clause.must.isEmpty() && clause.mustNot.isEmpty() && clause.should.size() == 1) {
+						clause = clause.should.firstEntry().getValue();
+					}
+				} else if (c == '"' && line.indexOf('"', index + 1) > 0) {
+					int end = line.indexOf('"', index + 1);
+					clause = term(line.substring(index + 1, end));
+					index = end + 1;
+				} else if (c == '"') {
+					index++;
+					continue;
+				} else {
+					int start = index;
+					while (index < line.length() && !Character.isWhitespace(line.charAt(index))
+							&& "()\"".indexOf(line.charAt(index)) < 0) {
+						index++;
+					}
+					clause = term(line.substring(start, index));
+				}
+				if (clause != null && !clause.isEmpty()) {
+					group.add(operator, clause);
+				}
+			}
+			return group;
+		}
+
+		/**
+		 * Stems a word or the words of a phrase into a single clause.
+		 *
+		 * @param text the word or phrase
+		 * @return the clause, or null if nothing is left after stemming
+		 */
+		private BooleanQuery term(String text) {
+			ArrayList<String> stems = new ArrayList<String>();
+			TextFileStemmer.stemLine(text, stemmer, stems);
+			if (stems.isEmpty()) {
+				return null;
+			}
+			return new BooleanQuery(String.join(" ", stems));
+		}
+	}
+}
@@ -0,0 +1,227 @@
+package edu.usfca.cs272;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of every location in an index. Each location is given a dense
+ * {@code int} document id in the order it is first seen, and its word count is
+ * kept in a parallel {@code int[]} so the rest of the index can work with ids
+ * and only resolve the location string when it is output.
+ *
+ * Warning: Adding documents and changing counts must be synchronized
+ * externally. Looking up documents that were added before is safe while
+ * another thread adds new ones, since the arrays are republished through
+ * volatile fields whenever they grow.
+ *
+ * @author kyle
+ */
+public class DocumentTable {
+	/**
+	 * Document id for each location
+	 */
+	private final ConcurrentHashMap<String, Integer> ids;
+
+	/**
+	 * Location for each document id
+	 */
+	private volatile String[] locations;
+
+	/**
+	 * Word count for each document id
+	 */
+	private volatile int[] counts;
+
+	/**
+	 * Number of documents
+	 */
+	private volatile int size;
+
+	/**
+	 * Sum of the word counts of every document
+	 */
+	private volatile long total;
+
+	/**
+	 * Constructor method
+	 */
+	public DocumentTable() {
+		this.ids = new ConcurrentHashMap<String, Integer>();
+		this.locations = new String[16];
+		this.counts = new int[16];
+		this.size = 0;
+		this.total = 0;
+	}
+
+	/**
+	 * Copy constructor
+	 *
+	 * @param other the table to copy
+	 */
+	public DocumentTable(DocumentTable other) {
+		this.ids = new ConcurrentHashMap<String, Integer>(other.ids);
+		this.locations = Arrays.copyOf(other.locations, Math.max(other.size, 1));
+		this.counts = Arrays.copyOf(other.counts, Math.max(other.size, 1));
+		this.size = other.size;
+		this.total = other.total;
+	}
+
+	/**
+	 * Adds a new location with the given word count.
+	 *
+	 * @param location the location to add
+	 * @param count    the word count of the location
+	 * @return the document id of the location
+	 * @throws IllegalArgumentException if the location is already in the table
+	 */
+	public int add(String location, int count) {
+		if (ids.containsKey(location)) {
+			throw new IllegalArgumentException("Duplicate location: " + location);
+		}
+		String[] locations = this.locations;
+		int[] counts = this.counts;
+		int document = size;
+		if (document == locations.length) {
+			locations = Arrays.copyOf(locations, document * 2);
+			counts = Arrays.copyOf(counts, document * 2);
+		}
+		locations[document] = location;
+		counts[document] = count;
+		this.locations = locations;
+		this.counts = counts;
+		ids.put(location, document);
+		total += count;
+		size = document + 1;
+		return document;
+	}
+
+	/**
+	 * Adds every document of another table, summing the word counts of locations
+	 * already in this one.
+	 *
+	 * @param other the table to add
+	 * @return translation from the other table's document ids to this one's
+	 */
+	public int[] addAll(DocumentTable other) {
+		int[] remap = new int[other.size];
+		for (int i = 0; i < remap.length; i++) {
+			String location = other.location(i);
+			int document = id(location);
+			if (document < 0) {
+				document = add(location, other.count(i));
+			} else {
+				setCount(document, count(document) + other.count(i));
+			}
+			remap[i] = document;
+		}
+		return remap;
+	}
+
+	/**
+	 * Returns the document id of a location.
+	 *
+	 * @param location the location to look up
+	 * @return the document id, or -1 if the location is not in the table
+	 */
+	public int id(String location) {
+		Integer id = ids.get(location);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns the location of a document.
+	 *
+	 * @param document the document id
+	 * @return the location
+	 */
+	public String location(int document) {
+		return locations[document];
+	}
+
+	/**
+	 * Returns the word count of a document.
+	 *
+	 * @param document the document id
+	 * @return the word count
+	 */
+	public int count(int document) {
+		return counts[document];
+	}
+
+	/**
+	 * Sets the word count of a document.
+	 *
+	 * @param document the document id
+	 * @param count    the new word count
+	 */
+	public void setCount(int document, int count) {
+		total += count - counts[document];
+		counts[document] = count;
+	}
+
+	/**
+	 * Returns the number of documents.
+	 *
+	 * @return number of documents
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the average word count of the documents, kept up to date as
+	 * documents are added.
+	 *
+	 * @return the average word count, or 0 if there are no documents
+	 */
+	public double average() {
+		int size = this.size;
+		return size == 0 ? 0 : (double) total / size;
+	}
+
+	/**
+	 * Removes every document from the table.
+	 */
+	public void clear() {
+		size = 0;
+		total = 0;
+		ids.clear();
+		locations = new String[16];
+		counts = new int[16];
+	}
+
+	/**
+	 * Returns the rank of every document when sorted by location, which is the
+	 * order locations are output in.
+	 *
+	 * @return array where index is the document id and value is its rank
+	 */
+	public int[] ranks() {
+		Integer[] order = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		String[] locations = this.locations;
+		Arrays.sort(order, (a, b) -> locations[a].compareTo(locations[b]));
+		int[] ranks = new int[size];
+		for (int i = 0; i < size; i++) {
+			ranks[order[i]] = i;
+		}
+		return ranks;
+	}
+
+	/**
+	 * Returns the word counts keyed by location in sorted order.
+	 *
+	 * @return map of location to word count
+	 */
+	public Map<String, Integer> counts() {
+		TreeMap<String, Integer> sorted = new TreeMap<String, Integer>();
+		for (int i = 0; i < size; i++) {
+			sorted.put(location(i), count(i));
+		}
+		return sorted;
+	}
+}
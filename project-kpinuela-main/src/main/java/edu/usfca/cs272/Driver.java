@@ -1,10 +1,14 @@
 package edu.usfca.cs272;
 
+import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Set;
 
 /**
  * Class responsible for running this project based on the provided command-line
@@ -30,6 +34,34 @@ public class Driver {
 		MultiThreadInvertedIndex threadIndex = null;
 		WorkQueue queue = null;
 		URL seed;
+		int top = 0;
+		if (parser.hasFlag("-top")) {
+			top = parser.getInteger("-top", 10);
+			if (top <= 0) {
+				top = 10;
+			}
+		}
+		Scorer scorer = Scorer.FREQUENCY;
+		if (parser.hasFlag("-scorer")) {
+			String name = parser.getString("-scorer", "frequency");
+			scorer = Scorer.of(name);
+			if (scorer == null) {
+				System.out.println("Unknown scorer " + name + ", using frequency");
+				scorer = Scorer.FREQUENCY;
+			}
+		}
+		boolean compact = parser.hasFlag("-compact");
+		String compression = JsonFormat.NONE;
+		if (parser.hasFlag("-compress")) {
+			compression = parser.getString("-compress", JsonFormat.GZIP).toLowerCase();
+		}
+		JsonFormat format;
+		try {
+			format = new JsonFormat(compact, compression);
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage() + ", using gzip");
+			format = new JsonFormat(compact, JsonFormat.GZIP);
+		}
 		if (parser.hasFlag("-threads") || parser.hasFlag("-html")||parser.hasFlag("-server")) {
 			int defaultThreads = 5;
 			int threads = parser.getInteger("-threads", defaultThreads);
@@ -37,24 +69,71 @@ public class Driver {
 				threads = defaultThreads;
 			}
 			queue = new WorkQueue(threads);
-			threadIndex = new MultiThreadInvertedIndex();
+			if (parser.hasFlag("-stripes")) {
+				int stripes = parser.getInteger("-stripes", StripedInvertedIndex.DEFAULT);
+				if (stripes <= 0) {
+					stripes = StripedInvertedIndex.DEFAULT;
+				}
+				threadIndex = new StripedInvertedIndex(stripes);
+			} else if (parser.hasFlag("-segments") || parser.hasFlag("-server")) {
+				// the server publishes while crawling, and segments only copy new pages
+				int flushSize = parser.getInteger("-segments", SegmentedInvertedIndex.DEFAULT);
+				if (flushSize <= 0) {
+					flushSize = SegmentedInvertedIndex.DEFAULT;
+				}
+				threadIndex = new SegmentedInvertedIndex(queue, flushSize, SegmentedInvertedIndex.FACTOR);
+			} else {
+				threadIndex = new MultiThreadInvertedIndex();
+			}
+			if (parser.hasFlag("-parallel")) {
+				int threshold = parser.getInteger("-parallel", InvertedIndex.PARALLEL);
+				if (threshold <= 0) {
+					threshold = InvertedIndex.PARALLEL;
+				}
+				threadIndex.parallel(queue, threshold);
+			}
 			index = threadIndex;
-			queryparser = new MultiThreadQueryParser(threadIndex, queue);
+			queryparser = new MultiThreadQueryParser(threadIndex, queue, top, scorer, parser.hasFlag("-batch"));
 		} else {
 			index = new InvertedIndex();
-			queryparser = new QueryParser(index);
+			queryparser = new QueryParser(index, top, scorer);
+		}
+		int flush = 0;
+		if (parser.hasFlag("-accumulate")) {
+			flush = parser.getInteger("-accumulate", WorkerIndexes.FLUSH);
+			if (flush <= 0) {
+				flush = WorkerIndexes.FLUSH;
+			}
+		}
+		boolean loaded = false;
+		if (parser.hasFlag("-load")) {
+			Path path = parser.getPath("-load", Path.of("index.bin"));
+			try {
+				if (threadIndex != null) {
+					threadIndex.load(path);
+				} else {
+					index = new MappedInvertedIndex(path);
+					queryparser = new QueryParser(index, top, scorer);
+				}
+				loaded = true;
+			} catch (IOException e) {
+				System.out.println("Unable to load index from " + path);
+			}
 		}
 		if(parser.hasFlag("-server")) {
 			int port =parser.getInteger("-server",8080);
 			EngineServer server = new EngineServer(threadIndex);
 			try {
-				seed = new URL(parser.getString("-html"));
-				if (parser.hasFlag("-max")) {
-					int max = parser.getInteger("-max", 1);
-					WebCrawler crawler = new WebCrawler(threadIndex, queue,
-							max);
-					crawler.webCrawl(seed, max);
-					server.SearchServer(port, seed, crawler);
+				if (loaded) {
+					server.SearchServer(port, null, null);
+				} else {
+					seed = new URL(parser.getString("-html"));
+					if (parser.hasFlag("-max")) {
+						int max = parser.getInteger("-max", 1);
+						WebCrawler crawler = new WebCrawler(threadIndex, queue,
+								max, true);
+						server.SearchServer(port, seed, crawler);
+					}
 				}
 			} catch (MalformedURLException e) {
 				System.out.println("Invalid URL");
@@ -62,26 +141,26 @@ public class Driver {
 				e.printStackTrace();
 			}
 		}
-		if (parser.hasFlag("-html")) {
+		if (parser.hasFlag("-html") && !loaded) {
 			try {
 				seed = new URL(parser.getString("-html"));
 				if (parser.hasFlag("-max")) {
 					int max = parser.getInteger("-max", 1);
 					WebCrawler crawler = new WebCrawler(threadIndex, queue,
-							max);
+							max, false, flush);
 					crawler.webCrawl(seed, max);
 				}
 			} catch (MalformedURLException e) {
 				System.out.println("Invalid URL");
 			}
 		}
-		if (parser.hasFlag("-text")) {
+		if (parser.hasFlag("-text") && !loaded) {
 			Path path = parser.getPath("-text");
 			try {
 				if (path != null) {
 					if (threadIndex != null) {
 						MultiThreadInvertedIndexBuilder.build(path, threadIndex,
-								queue);
+								queue, flush);
 					} else {
 						InvertedIndexBuilder.build(path, index);
 					}
@@ -97,19 +176,48 @@ public class Driver {
 			}
 		}
 
+		if (threadIndex != null) {
+			threadIndex.freeze();
+		} else if (!loaded) {
+			index = new FrozenInvertedIndex(index);
+			queryparser = new QueryParser(index, top, scorer);
+		}
+
+		if (parser.hasFlag("-save")) {
+			Path path = parser.getPath("-save", Path.of("index.bin"));
+			try {
+				index.save(path);
+			} catch (IOException e) {
+				System.out.println("Unable to save index to " + path);
+			}
+		}
+
 		if (parser.hasFlag("-index")) {
 			Path path = parser.getPath("-index", Path.of("index.json"));
 			try {
-				index.indexWrite(path);
+				if (queue != null) {
+					index.indexWrite(path, queue, format);
+				} else {
+					index.indexWrite(path, format);
+				}
 			} catch (IOException e) {
 				System.out.println("Invalid Input for query");
 			}
 		}
 
+		boolean streamed = parser.hasFlag("-stream") && parser.hasFlag("-query") && parser.hasFlag("-results");
 		if (parser.hasFlag("-query")) {
 			Path path = parser.getPath("-query", Path.of("results.json"));
 			try {
-				queryparser.parseQuery(path, parser.hasFlag("-exact"));
+				if (streamed) {
+					queryparser.streamQuery(path, parser.hasFlag("-exact"),
+							parser.getPath("-results", Path.of("results.json")), format);
+				} else {
+					queryparser.parseQuery(path, parser.hasFlag("-exact"));
+				}
+				if (parser.hasFlag("-explain")) {
+					explain(index, path, parser.hasFlag("-exact"), top, scorer);
+				}
 			} catch (IOException e) {
 				System.out.println("Invalid Input for query");
 			}
@@ -118,16 +226,16 @@ public class Driver {
 		if (parser.hasFlag("-counts")) {
 			Path path = parser.getPath("-counts", Path.of("counts.json"));
 			try {
-				index.countWrite(path);
+				index.countWrite(path, format);
 			} catch (IOException e) {
 				System.out.println("Invalid Input output");
 			}
 		}
 
-		if (parser.hasFlag("-results")) {
+		if (parser.hasFlag("-results") && !streamed) {
 			Path path = parser.getPath("-results", Path.of("results.json"));
 			try {
-				queryparser.queryWrite(path);
+				queryparser.queryWrite(path, format);
 			} catch (IOException e) {
 				System.out.println("Invalid Results Input");
 			}
@@ -136,4 +244,34 @@ public class Driver {
 			queue.shutdown();
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Prints how each plain query in a file is searched, for finding out why a
+	 * query is slow. Boolean queries are only listed.
+	 *
+	 * @param index  the index the queries were searched on
+	 * @param path   the query file
+	 * @param exact  type of search
+	 * @param top    most results kept for each query, or 0 for all of them
+	 * @param scorer how the results are scored
+	 * @throws IOException if the query file cannot be read
+	 */
+	private static void explain(InvertedIndex index, Path path, boolean exact, int top, Scorer scorer)
+			throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				BooleanQuery query = QueryParserInterface.query(line);
+				if (query != null) {
+					System.out.println(query + ": boolean query");
+					continue;
+				}
+				Set<String> queryStems = QueryParserInterface.stems(line);
+				if (!queryStems.isEmpty()) {
+					System.out.print(QueryParserInterface.joined(queryStems) + ": "
+							+ index.explain(queryStems, exact, top, scorer));
+				}
+			}
+		}
+	}
+}
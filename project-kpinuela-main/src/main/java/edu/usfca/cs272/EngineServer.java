@@ -30,6 +30,10 @@ public class EngineServer {
 
 	}
 	/**
+	 * Starts the server, then crawls from the seed if a crawler is given.
+	 * Searches are answered from the latest snapshot of the index while the
+	 * crawl runs, and from the frozen index once it is done.
+	 * 
 	 * @param port
 	 *            number of the server's port
 	 * @param seed
@@ -50,6 +54,10 @@ public class EngineServer {
 		}
 		server.setHandler(handler);
 		server.start();
+		if (crawler != null && seed != null) {
+			crawler.webCrawl(seed);
+		}
+		this.index.freeze();
 		server.join();
 	}
 }
@@ -0,0 +1,38 @@
+package edu.usfca.cs272;
+
+/**
+ * The original scoring model: the times the query words appear in a document
+ * over the word count of the document. The score is worked out from the total
+ * count every time so it comes out exactly the same no matter how many words
+ * matched.
+ *
+ * @author kyle
+ */
+public class FrequencyScorer implements Scorer {
+	/**
+	 * Every word is scored the same way, so a single term is shared
+	 */
+	private final Term term;
+
+	/**
+	 * Constructor method
+	 */
+	public FrequencyScorer() {
+		this.term = new Term() {
+			@Override
+			public double score(double score, int count, int frequency, int length) {
+				return (double) count / (double) length;
+			}
+
+			@Override
+			public double bound(Postings postings, DocumentTable documents) {
+				return postings.bound(documents);
+			}
+		};
+	}
+
+	@Override
+	public Term term(int matches, DocumentTable documents) {
+		return term;
+	}
+}
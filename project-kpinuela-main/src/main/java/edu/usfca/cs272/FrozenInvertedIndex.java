@@ -0,0 +1,318 @@
+package edu.usfca.cs272;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A read-only copy of an {@link InvertedIndex} compacted into flat arrays: a
+ * front-coded {@link TermDictionary} of words, and for each word a range of a
+ * shared document id array and frequency array. Since nothing can change once
+ * it is built, it is safe to search from any number of threads without
+ * locking.
+ *
+ * @author kyle
+ */
+public class FrozenInvertedIndex extends InvertedIndex {
+	/**
+	 * Every word in sorted order
+	 */
+	private final TermDictionary words;
+
+	/**
+	 * Start of each word's postings, with one extra entry marking the end
+	 */
+	private final int[] offsets;
+
+	/**
+	 * Document ids of every word's postings, back to back
+	 */
+	private final int[] documentIds;
+
+	/**
+	 * Frequencies of every word's postings, back to back
+	 */
+	private final int[] frequencies;
+
+	/**
+	 * Positions of every word's postings, back to back
+	 */
+	private final PositionList[] positions;
+
+	/**
+	 * Highest score a single document gets from each word's postings
+	 */
+	private final double[] bounds;
+
+	/**
+	 * Compacts an index. The positions are shared with the original and marked as
+	 * shared, so the original copies them before changing them again. Searches
+	 * are split up the same way as in the original.
+	 *
+	 * @param index the index to compact
+	 */
+	public FrozenInvertedIndex(InvertedIndex index) {
+		this(index.terms(), new DocumentTable(index.documents()));
+		parallel(index);
+	}
+
+	/**
+	 * Compacts postings that use the ids of an existing document table. The table
+	 * is used as is instead of being copied, so it may keep growing as long as the
+	 * documents already in the postings do not change.
+	 *
+	 * @param terms     words mapped to their postings, in sorted order
+	 * @param documents the document table the postings refer to
+	 */
+	protected FrozenInvertedIndex(Map<String, ? extends Postings> terms, DocumentTable documents) {
+		super(documents);
+		int total = 0;
+		for (Postings postings : terms.values()) {
+			total += postings.size();
+		}
+		String[] words = new String[terms.size()];
+		this.offsets = new int[words.length + 1];
+		this.bounds = new double[words.length];
+		this.documentIds = new int[total];
+		this.frequencies = new int[total];
+		this.positions = new PositionList[total];
+		int word = 0;
+		int offset = 0;
+		for (Entry<String, ? extends Postings> entry : terms.entrySet()) {
+			Postings postings = entry.getValue();
+			words[word] = entry.getKey();
+			offsets[word] = offset;
+			for (int i = 0; i < postings.size(); i++) {
+				documentIds[offset] = postings.document(i);
+				frequencies[offset] = postings.frequency(i);
+				positions[offset] = postings.positions(i);
+				positions[offset].share();
+				bounds[word] = Math.max(bounds[word], (double) frequencies[offset] / documents.count(documentIds[offset]));
+				offset++;
+			}
+			word++;
+		}
+		offsets[word] = offset;
+		this.words = new TermDictionary(words);
+	}
+
+	/**
+	 * Returns the total number of postings across every word.
+	 *
+	 * @return number of word and document pairs in the index
+	 */
+	public int postingCount() {
+		return documentIds.length;
+	}
+
+	/**
+	 * Not supported, the index is read-only.
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public void add(String word, String path, int value) {
+		throw new UnsupportedOperationException("Index is frozen");
+	}
+
+	/**
+	 * Not supported, the index is read-only.
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public void addAll(InvertedIndex local) {
+		throw new UnsupportedOperationException("Index is frozen");
+	}
+
+	/**
+	 * Not supported, the index is read-only.
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public void clear() {
+		throw new UnsupportedOperationException("Index is frozen");
+	}
+
+	@Override
+	protected Postings postings(String word) {
+		int index = words.find(word);
+		return index < 0 ? null : new Range(index);
+	}
+
+	@Override
+	protected List<Postings> prefix(String prefix) {
+		ArrayList<Postings> list = new ArrayList<Postings>();
+		int start = words.lower(prefix);
+		int end = words.upper(prefix, start);
+		for (int i = start; i < end; i++) {
+			list.add(new Range(i));
+		}
+		return list;
+	}
+
+	/**
+	 * Counts a prefix from its range of the dictionary and the offsets alone,
+	 * since the postings of a range of words are back to back.
+	 */
+	@Override
+	protected void estimate(String stem, boolean exact, QueryPlanner.Estimate estimate) {
+		if (exact) {
+			int index = words.find(stem);
+			if (index >= 0) {
+				estimate.add(offsets[index + 1] - offsets[index]);
+			}
+			return;
+		}
+		int start = words.lower(stem);
+		int end = words.upper(stem, start);
+		estimate.add(end - start, offsets[end] - offsets[start]);
+	}
+
+	@Override
+	protected Map<String, ? extends Postings> terms() {
+		return terms(0, words.size());
+	}
+
+	/**
+	 * Returns the dictionary's range of words with the prefix.
+	 */
+	@Override
+	protected Map<String, ? extends Postings> terms(String prefix) {
+		int start = words.lower(prefix);
+		return terms(start, words.upper(prefix, start));
+	}
+
+	/**
+	 * Returns a range of words mapped to their postings, in sorted order.
+	 *
+	 * @param start index of the first word
+	 * @param end   one past the index of the last word
+	 * @return the words and their postings
+	 */
+	private Map<String, Postings> terms(int start, int end) {
+		return new AbstractMap<String, Postings>() {
+			@Override
+			public Set<Entry<String, Postings>> entrySet() {
+				return new AbstractSet<Entry<String, Postings>>() {
+					@Override
+					public Iterator<Entry<String, Postings>> iterator() {
+						return new Iterator<Entry<String, Postings>>() {
+							/**
+							 * index of the next word
+							 */
+							private int next = start;
+
+							@Override
+							public boolean hasNext() {
+								return next < end;
+							}
+
+							@Override
+							public Entry<String, Postings> next() {
+								if (next >= end) {
+									throw new NoSuchElementException();
+								}
+								Range range = new Range(next);
+								return new SimpleImmutableEntry<String, Postings>(words.term(next++), range);
+							}
+						};
+					}
+
+					@Override
+					public int size() {
+						return end - start;
+					}
+				};
+			}
+
+			@Override
+			public Postings get(Object key) {
+				if (!(key instanceof String)) {
+					return null;
+				}
+				int index = words.find((String) key);
+				return index >= start && index < end ? new Range(index) : null;
+			}
+
+			@Override
+			public boolean containsKey(Object key) {
+				return get(key) != null;
+			}
+		};
+	}
+
+	/**
+	 * The postings of one word, read from its range of the shared arrays
+	 */
+	private class Range implements Postings {
+		/**
+		 * start of the range
+		 */
+		private final int start;
+
+		/**
+		 * number of documents in the range
+		 */
+		private final int size;
+
+		/**
+		 * index of the word
+		 */
+		private final int word;
+
+		/**
+		 * Constructor method
+		 *
+		 * @param word index of the word
+		 */
+		public Range(int word) {
+			this.word = word;
+			this.start = offsets[word];
+			this.size = offsets[word + 1] - start;
+		}
+
+		/**
+		 * Returns the bound computed when the index was built. Word counts only
+		 * grow afterwards, so it stays an upper bound.
+		 */
+		@Override
+		public double bound(DocumentTable documents) {
+			return bounds[word];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public int document(int index) {
+			return documentIds[start + index];
+		}
+
+		@Override
+		public int frequency(int index) {
+			return frequencies[start + index];
+		}
+
+		@Override
+		public PositionList positions(int index) {
+			return positions[start + index];
+		}
+
+		@Override
+		public int find(int document) {
+			int index = Arrays.binarySearch(documentIds, start, start + size, document);
+			return index < 0 ? index + start : index - start;
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses everything written to it in blocks of a fixed size, each one
+ * written to the file as its own gzip member at the fastest level. Members
+ * are independent, so a reader can start at any block and blocks could be
+ * decompressed at the same time, while any gzip reader still reads the whole
+ * file as one stream. One deflater is reused for every block.
+ *
+ * Warning: This class is not thread-safe.
+ *
+ * @author kyle
+ */
+public class GzipBlockChannel implements WritableByteChannel {
+	/**
+	 * number of bytes compressed into each block
+	 */
+	public static final int BLOCK = 1 << 20;
+
+	/**
+	 * the gzip member header: magic, deflate, no flags, no time, fastest, unknown
+	 * system
+	 */
+	private static final byte[] HEADER = { 0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 4, (byte) 0xff };
+
+	/**
+	 * the file to write to
+	 */
+	private final FileChannel file;
+
+	/**
+	 * the bytes of the block being filled
+	 */
+	private final byte[] block;
+
+	/**
+	 * number of bytes in the block being filled
+	 */
+	private int size;
+
+	/**
+	 * the compressed bytes of a block
+	 */
+	private final byte[] compressed;
+
+	/**
+	 * compresses each block
+	 */
+	private final Deflater deflater;
+
+	/**
+	 * checksum of each block
+	 */
+	private final CRC32 crc;
+
+	/**
+	 * whether the channel is still open
+	 */
+	private boolean open;
+
+	/**
+	 * Constructor method
+	 *
+	 * @param file the file to write the compressed blocks to
+	 */
+	public GzipBlockChannel(FileChannel file) {
+		this.file = file;
+		this.block = new byte[BLOCK];
+		this.size = 0;
+		this.compressed = new byte[1 << 16];
+		this.deflater = new Deflater(Deflater.BEST_SPEED, true);
+		this.crc = new CRC32();
+		this.open = true;
+	}
+
+	@Override
+	public int write(ByteBuffer source) throws IOException {
+		if (!open) {
+			throw new ClosedChannelException();
+		}
+		int written = source.remaining();
+		while (source.hasRemaining()) {
+			int length = Math.min(source.remaining(), block.length - size);
+			source.get(block, size, length);
+			size += length;
+			if (size == block.length) {
+				writeBlock();
+			}
+		}
+		return written;
+	}
+
+	/**
+	 * Compresses the block being filled into its own gzip member.
+	 *
+	 * @throws IOException if an IO error occurs
+	 */
+	private void writeBlock() throws IOException {
+		if (size == 0) {
+			return;
+		}
+		crc.reset();
+		crc.update(block, 0, size);
+		deflater.reset();
+		deflater.setInput(block, 0, size);
+		deflater.finish();
+		writeFully(ByteBuffer.wrap(HEADER));
+		while (!deflater.finished()) {
+			int length = deflater.deflate(compressed);
+			writeFully(ByteBuffer.wrap(compressed, 0, length));
+		}
+		ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+		trailer.putInt((int) crc.getValue());
+		trailer.putInt(size);
+		trailer.flip();
+		writeFully(trailer);
+		size = 0;
+	}
+
+	/**
+	 * Writes every byte of a buffer to the file.
+	 *
+	 * @param buffer the bytes to write
+	 * @throws IOException if an IO error occurs
+	 */
+	private void writeFully(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			file.write(buffer);
+		}
+	}
+
+	@Override
+	public boolean isOpen() {
+		return open;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!open) {
+			return;
+		}
+		open = false;
+		try {
+			writeBlock();
+		} finally {
+			deflater.end();
+			file.close();
+		}
+	}
+}
@@ -4,9 +4,13 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
@@ -15,21 +19,72 @@ import java.util.TreeSet;
  *
  */
 public class InvertedIndex {
+	/**
+	 * The default number of posting lists above which a search is split up
+	 */
+	public static final int PARALLEL = 256;
+
 	/**
 	 * Map for the inverted index
 	 */
-	private final TreeMap<String, TreeMap<String, TreeSet<Integer>>> map;
+	private final TreeMap<String, PostingList> map;
+	/**
+	 * Document ids and word counts of every location
+	 */
+	private final DocumentTable documents;
+
+	/**
+	 * work queue broad searches are split across, or null to search on one
+	 * thread
+	 */
+	private volatile WorkQueue queue;
+
 	/**
-	 * Map to keep track of wordCOunt
+	 * most posting lists a search reads on one thread
 	 */
-	private final Map<String, Integer> countMap;
+	private volatile int threshold;
 
 	/**
 	 * Constructor method
 	 */
 	public InvertedIndex() {
-		map = new TreeMap<String, TreeMap<String, TreeSet<Integer>>>();
-		countMap = new TreeMap<String, Integer>();
+		this(new DocumentTable());
+	}
+
+	/**
+	 * Constructor method for an index that starts with the given documents
+	 * 
+	 * @param documents document ids and word counts of every location
+	 */
+	protected InvertedIndex(DocumentTable documents) {
+		this.map = new TreeMap<String, PostingList>();
+		this.documents = documents;
+		this.queue = null;
+		this.threshold = PARALLEL;
+	}
+
+	/**
+	 * Splits searches that read more than a number of posting lists, such as
+	 * short prefixes, into ranges of documents added up by the workers of a work
+	 * queue. Cheaper searches stay on one thread.
+	 * 
+	 * @param queue     the work queue to split searches across, or null to
+	 *                  search on one thread
+	 * @param threshold the most posting lists a search reads on one thread
+	 */
+	public void parallel(WorkQueue queue, int threshold) {
+		this.queue = queue;
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Copies how searches are split from another index.
+	 * 
+	 * @param other the index to copy from
+	 * @see #parallel(WorkQueue, int)
+	 */
+	protected void parallel(InvertedIndex other) {
+		parallel(other.queue, other.threshold);
 	}
 
 	/**
@@ -39,7 +94,42 @@ public class InvertedIndex {
 	 * @throws IOException input output exception
 	 */
 	public void indexWrite(Path path) throws IOException {
-		InvertedIndexWriter.write(map, path);
+		indexWrite(path, JsonFormat.PRETTY);
+	}
+
+	/**
+	 * writes the Index to the JSON in the given format
+	 * 
+	 * @param path   path from file writes the Index
+	 * @param format how to format and compress the file
+	 * @throws IOException input output exception
+	 */
+	public void indexWrite(Path path, JsonFormat format) throws IOException {
+		InvertedIndexWriter.write(terms(), documents, path, format);
+	}
+
+	/**
+	 * writes the Index to the JSON, splitting the words across the workers of a
+	 * work queue
+	 * 
+	 * @param path   path from file writes the Index
+	 * @param queue  the work queue to write on
+	 * @param format how to format and compress the file
+	 * @throws IOException input output exception
+	 */
+	public void indexWrite(Path path, WorkQueue queue, JsonFormat format) throws IOException {
+		InvertedIndexWriter.write(terms(), documents, path, queue, format);
+	}
+
+	/**
+	 * Saves the index to a binary file that can be opened again with
+	 * {@link MappedInvertedIndex}.
+	 * 
+	 * @param path path of the file to save to
+	 * @throws IOException input output exception
+	 */
+	public void save(Path path) throws IOException {
+		BinaryIndexWriter.write(terms(), documents, path);
 	}
 
 	/**
@@ -49,8 +139,18 @@ public class InvertedIndex {
 	 * @throws IOException input output exception
 	 */
 	public void countWrite(Path path) throws IOException {
-		SimpleJsonWriter.writeObject(countMap, path);
+		countWrite(path, JsonFormat.PRETTY);
+	}
 
+	/**
+	 * writes the Count to the index in the given format
+	 * 
+	 * @param path   path to be written on
+	 * @param format how to format and compress the file
+	 * @throws IOException input output exception
+	 */
+	public void countWrite(Path path, JsonFormat format) throws IOException {
+		SimpleJsonWriter.writeObject(documents.counts(), path, format);
 	}
 
 	/**
@@ -62,40 +162,155 @@ public class InvertedIndex {
 	 * @throws IOException input ouput Exception
 	 */
 	public void add(String word, String path, int value) throws IOException {
-		map.putIfAbsent(word, new TreeMap<String, TreeSet<Integer>>());
-		map.get(word).putIfAbsent(path, new TreeSet<Integer>());
-		map.get(word).get(path).add(value);
-		if (!countMap.containsKey(path) || countMap.get(path) < value) {
-			countMap.put(path, value);
+		int document = documents.id(path);
+		if (document < 0) {
+			document = documents.add(path, value);
+		} else if (documents.count(document) < value) {
+			documents.setCount(document, value);
 		}
+		PostingList postings = map.get(word);
+		if (postings == null) {
+			postings = new PostingList();
+			map.put(word, postings);
+		}
+		postings.add(document).add(value);
 	}
 
 	/**
-	 * adds the contests of one Inverted Index to another
+	 * adds the contests of one Inverted Index to another. Postings of a local
+	 * {@link InvertedIndex} are moved rather than copied, so it should not be used
+	 * afterwards.
+	 * 
+	 * The words of a local {@link InvertedIndex} are walked in sorted order and
+	 * each one is looked up once, so a new word takes its whole posting list over
+	 * as is and an existing one has the postings spliced onto the end of its
+	 * list. Into an empty index the sorted words are copied over in linear time.
 	 * 
 	 * @param local local instance of InvertedIndex
 	 * 
 	 */
 	public void addAll(InvertedIndex local) {
-		for (String word : local.map.keySet()) {
-			if (this.map.containsKey(word)) {
-				for (String location : local.map.get(word).keySet()) {
-					if (this.map.get(word).containsKey(location)) {
-						this.map.get(word).get(location).addAll(local.map.get(word).get(location));
-					} else {
-						this.map.get(word).put(location, local.map.get(word).get(location));
-					}
+		int[] remap = documents.addAll(local.documents);
+		Map<String, ? extends Postings> terms = local.terms();
+		if (terms != local.map) {
+			for (Entry<String, ? extends Postings> entry : terms.entrySet()) {
+				PostingList postings = this.map.get(entry.getKey());
+				if (postings == null) {
+					this.map.put(entry.getKey(), PostingList.of(entry.getValue(), remap));
+				} else {
+					postings.addAll(entry.getValue(), remap);
 				}
-			} else {
-				this.map.put(word, local.map.get(word));
 			}
+			return;
 		}
-		for (String location : local.countMap.keySet()) {
-			if (!this.countMap.containsKey(location)) {
-				this.countMap.put(location, local.countMap.get(location));
-			} else {
-				this.countMap.put(location, this.countMap.get(location) + local.countMap.get(location));
+		if (this.map.isEmpty()) {
+			for (PostingList postings : local.map.values()) {
+				postings.remap(remap);
+			}
+			this.map.putAll(local.map);
+			return;
+		}
+		for (Entry<String, PostingList> entry : local.map.entrySet()) {
+			entry.getValue().remap(remap);
+			PostingList postings = this.map.putIfAbsent(entry.getKey(), entry.getValue());
+			if (postings != null) {
+				postings.addAll(entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Merges several local indexes into a new one with a k-way merge of their
+	 * sorted words, so each word is looked up and added once no matter how many
+	 * of the indexes have it. Postings are moved rather than copied, so the
+	 * local indexes should not be used afterwards.
+	 * 
+	 * @param locals the local indexes to merge
+	 * @return a new index with everything in the local indexes
+	 */
+	public static InvertedIndex merge(List<InvertedIndex> locals) {
+		InvertedIndex merged = new InvertedIndex();
+		PriorityQueue<Cursor> cursors = new PriorityQueue<Cursor>(Math.max(1, locals.size()));
+		for (InvertedIndex local : locals) {
+			int[] remap = merged.documents.addAll(local.documents);
+			Cursor cursor = new Cursor(local.terms().entrySet().iterator(), remap);
+			if (cursor.word != null) {
+				cursors.add(cursor);
+			}
+		}
+		ArrayList<PostingList> lists = new ArrayList<PostingList>(locals.size());
+		while (!cursors.isEmpty()) {
+			String word = cursors.peek().word;
+			lists.clear();
+			while (!cursors.isEmpty() && cursors.peek().word.equals(word)) {
+				Cursor cursor = cursors.poll();
+				lists.add(PostingList.of(cursor.postings, cursor.remap));
+				if (cursor.next()) {
+					cursors.add(cursor);
+				}
+			}
+			merged.map.put(word, lists.size() == 1 ? lists.get(0) : PostingList.merge(lists));
+		}
+		return merged;
+	}
+
+	/**
+	 * The next word of a local index being merged
+	 */
+	private static class Cursor implements Comparable<Cursor> {
+		/**
+		 * the words of the local index
+		 */
+		private final Iterator<? extends Entry<String, ? extends Postings>> iterator;
+
+		/**
+		 * translation from the local document ids to the merged ones
+		 */
+		private final int[] remap;
+
+		/**
+		 * the current word, or null if there are no more
+		 */
+		private String word;
+
+		/**
+		 * the postings of the current word
+		 */
+		private Postings postings;
+
+		/**
+		 * Constructor method
+		 * 
+		 * @param iterator the words of the local index
+		 * @param remap    translation from the local document ids to the merged
+		 *                 ones
+		 */
+		public Cursor(Iterator<? extends Entry<String, ? extends Postings>> iterator, int[] remap) {
+			this.iterator = iterator;
+			this.remap = remap;
+			next();
+		}
+
+		/**
+		 * Moves to the next word.
+		 * 
+		 * @return true if there is another word
+		 */
+		public boolean next() {
+			if (!iterator.hasNext()) {
+				word = null;
+				postings = null;
+				return false;
 			}
+			Entry<String, ? extends Postings> entry = iterator.next();
+			word = entry.getKey();
+			postings = entry.getValue();
+			return true;
+		}
+
+		@Override
+		public int compareTo(Cursor other) {
+			return word.compareTo(other.word);
 		}
 	}
 
@@ -106,7 +321,8 @@ public class InvertedIndex {
 	 * @return word count
 	 */
 	public int getWordCount(String path) {
-		return countMap.getOrDefault(path, null);
+		int document = documents.id(path);
+		return document < 0 ? 0 : documents.count(document);
 	}
 
 	/**
@@ -117,7 +333,7 @@ public class InvertedIndex {
 	 * @return array list of Results
 	 */
 	public ArrayList<Result> search(Set<String> queryStems, boolean exact) {
-		return exact ? exactSearch(queryStems) : partialSearch(queryStems);
+		return search(queryStems, exact, Scorer.FREQUENCY);
 	}
 
 	/**
@@ -127,15 +343,7 @@ public class InvertedIndex {
 	 * @return arrav list of result
 	 */
 	public ArrayList<Result> exactSearch(Set<String> queryStems) {
-		ArrayList<Result> resultList = new ArrayList<Result>();
-		HashMap<String, Result> lookup = new HashMap<String, Result>();
-		for (String stem : queryStems) {
-			if (map.containsKey(stem)) {
-				searchHelper(resultList, lookup, stem);
-			}
-		}
-		Collections.sort(resultList);
-		return resultList;
+		return search(queryStems, true, Scorer.FREQUENCY);
 	}
 
 	/**
@@ -145,38 +353,230 @@ public class InvertedIndex {
 	 * @return arraylist of result
 	 */
 	public ArrayList<Result> partialSearch(Set<String> queryStems) {
-		ArrayList<Result> resultList = new ArrayList<Result>();
-		HashMap<String, Result> lookup = new HashMap<String, Result>();
-		for (String stem : queryStems) {
-			for (String word : map.tailMap(stem).keySet()) {
-				if (!word.startsWith(stem)) {
-					break;
-				} else {
-					searchHelper(resultList, lookup, word);
-				}
-			}
+		return search(queryStems, false, Scorer.FREQUENCY);
+	}
+
+	/**
+	 * Searches with a scoring model other than the default one.
+	 * 
+	 * @param queryStems stems
+	 * @param exact      type of search
+	 * @param scorer     how to score the results
+	 * @return array list of Results, sorted
+	 */
+	public ArrayList<Result> search(Set<String> queryStems, boolean exact, Scorer scorer) {
+		return QueryPlanner.plan(this, queryStems, exact, 0, scorer).execute();
+	}
+
+	/**
+	 * Returns only the best results of a search, in the same order as
+	 * {@link #search(Set, boolean)}.
+	 * 
+	 * @param queryStems stems
+	 * @param exact      type of search
+	 * @param k          the most results to return; should be greater than 0
+	 * @return array list of the best k Results
+	 */
+	public ArrayList<Result> search(Set<String> queryStems, boolean exact, int k) {
+		return search(queryStems, exact, k, Scorer.FREQUENCY);
+	}
+
+	/**
+	 * Returns only the best results of a search with a scoring model other than
+	 * the default one.
+	 * 
+	 * @param queryStems stems
+	 * @param exact      type of search
+	 * @param k          the most results to return; should be greater than 0
+	 * @param scorer     how to score the results
+	 * @return array list of the best k Results
+	 */
+	public ArrayList<Result> search(Set<String> queryStems, boolean exact, int k, Scorer scorer) {
+		return QueryPlanner.plan(this, queryStems, exact, k, scorer).execute();
+	}
+
+	/**
+	 * Explains how a search would be run without running it.
+	 * 
+	 * @param queryStems stems
+	 * @param exact      type of search
+	 * @param k          the most results to return, or 0 to return all of them
+	 * @param scorer     how to score the results
+	 * @return the plan of the search
+	 * @see QueryPlanner
+	 */
+	public String explain(Set<String> queryStems, boolean exact, int k, Scorer scorer) {
+		return QueryPlanner.plan(this, queryStems, exact, k, scorer).toString();
+	}
+
+	/**
+	 * Searches many plain queries at once with the default scoring model,
+	 * reading the postings of each stem only once for all of them.
+	 * 
+	 * @param queries the stems of each query
+	 * @param exact   type of search
+	 * @param k       the most results to return for each query, or 0 to return
+	 *                all of them
+	 * @param queue   the work queue to search with
+	 * @return array list of sorted Results for each query, in the same order
+	 * @see BatchSearcher
+	 */
+	public ArrayList<ArrayList<Result>> search(List<Set<String>> queries, boolean exact, int k, WorkQueue queue) {
+		return BatchSearcher.search(this, queries, exact, k, queue);
+	}
+
+	/**
+	 * Searches with a boolean query.
+	 * 
+	 * @param query  the query
+	 * @param exact  type of search
+	 * @param k      the most results to return, or 0 to return all of them
+	 * @param scorer how to score the results
+	 * @return array list of Results, sorted
+	 */
+	public ArrayList<Result> search(BooleanQuery query, boolean exact, int k, Scorer scorer) {
+		ArrayList<Result> resultList = BooleanEvaluator.search(this, query, exact, scorer);
+		if (k > 0) {
+			return top(resultList, k);
 		}
 		Collections.sort(resultList);
 		return resultList;
 	}
 
 	/**
-	 * A helper method for the search
+	 * Picks the best results over a set of posting lists. A few lists are handed
+	 * to the {@link MaxScoreEvaluator}, which skips documents that cannot make the
+	 * best k. Short prefixes can match hundreds of words, and then every document
+	 * is scored instead and the best kept in a bounded heap, since checking that
+	 * many lists for each document costs more than it skips.
 	 * 
-	 * @param resultList list of results
-	 * @param lookup     the lookup map
-	 * @param word       the word in the search
+	 * @param lists  the postings of every matching word
+	 * @param k      the most results to return
+	 * @param scorer how to score the results
+	 * @return array list of the best k results, sorted
+	 * @see QueryPlanner#strategy(List, int, int)
 	 */
-	private void searchHelper(ArrayList<Result> resultList, HashMap<String, Result> lookup, String word) {
-		for (String file : map.get(word).keySet()) {
-			if (!lookup.containsKey(file)) {
-				Result newResult = new Result(file);
-				lookup.put(file, newResult);
-				resultList.add(newResult);
+	protected ArrayList<Result> best(List<? extends Postings> lists, int k, Scorer scorer) {
+		return QueryPlanner.evaluate(this, lists, k, scorer, QueryPlanner.strategy(lists, k, documents.size()));
+	}
+
+	/**
+	 * Picks the best results with a bounded heap that holds at most k of them,
+	 * with the worst on top to be replaced, then sorts only those.
+	 * 
+	 * @param results the results in any order
+	 * @param k       the most results to keep
+	 * @return array list of the best k results, sorted
+	 */
+	protected static ArrayList<Result> top(List<Result> results, int k) {
+		if (k <= 0) {
+			return new ArrayList<Result>();
+		}
+		if (results.size() <= k) {
+			ArrayList<Result> sorted = new ArrayList<Result>(results);
+			Collections.sort(sorted);
+			return sorted;
+		}
+		PriorityQueue<Result> heap = new PriorityQueue<Result>(k + 1, Collections.reverseOrder());
+		for (Result result : results) {
+			if (heap.size() < k) {
+				heap.add(result);
+			} else if (result.compareTo(heap.peek()) < 0) {
+				heap.poll();
+				heap.add(result);
 			}
-			lookup.get(file).update(word);
 		}
+		ArrayList<Result> best = new ArrayList<Result>(heap);
+		Collections.sort(best);
+		return best;
+	}
+
+	/**
+	 * Adds up the results over a set of posting lists without sorting them.
+	 * 
+	 * @param lists  the postings of every matching word
+	 * @param scorer how to score the results
+	 * @return array list of Results in no particular order
+	 */
+	protected ArrayList<Result> matches(List<? extends Postings> lists, Scorer scorer) {
+		return accumulate(lists, scorer).results();
+	}
 
+	/**
+	 * Adds up the counts and scores over a set of posting lists by document id,
+	 * without creating any results yet.
+	 * 
+	 * @param lists  the postings of every matching word
+	 * @param scorer how to score the results
+	 * @return the counts and scores of every matching document
+	 */
+	protected ScoreAccumulator accumulate(List<? extends Postings> lists, Scorer scorer) {
+		long expected = 0;
+		for (Postings postings : lists) {
+			expected += postings.size();
+		}
+		ScoreAccumulator accumulator = new ScoreAccumulator(documents, (int) Math.min(expected, documents.size()));
+		WorkQueue queue = this.queue;
+		if (queue != null && lists.size() > threshold && accumulator.isDense()) {
+			Scorer.Term[] terms = new Scorer.Term[lists.size()];
+			for (int i = 0; i < terms.length; i++) {
+				terms[i] = scorer.term(lists.get(i).size(), documents);
+			}
+			accumulator.addAll(lists, terms, queue);
+			return accumulator;
+		}
+		for (Postings postings : lists) {
+			accumulator.add(postings, scorer.term(postings.size(), documents));
+		}
+		return accumulator;
+	}
+
+	/**
+	 * Looks up the postings of every word a search matches. A word is listed once
+	 * for each query stem it matches. A stem with spaces in it is a phrase, and
+	 * is listed as the places the whole phrase appears, matching its words
+	 * exactly in either type of search.
+	 * 
+	 * @param queryStems stems
+	 * @param exact      type of search
+	 * @return the postings of every matching word
+	 */
+	protected List<Postings> lists(Set<String> queryStems, boolean exact) {
+		ArrayList<Postings> lists = new ArrayList<Postings>();
+		for (String stem : queryStems) {
+			if (stem.indexOf(' ') >= 0) {
+				Postings postings = phrase(stem.split(" "));
+				if (postings.size() > 0) {
+					lists.add(postings);
+				}
+			} else if (exact) {
+				Postings postings = postings(stem);
+				if (postings != null) {
+					lists.add(postings);
+				}
+			} else {
+				lists.addAll(prefix(stem));
+			}
+		}
+		return lists;
+	}
+
+	/**
+	 * Finds every place a phrase appears.
+	 * 
+	 * @param words the stems of the phrase in order
+	 * @return the documents the phrase appears in and where it starts in each
+	 */
+	protected Postings phrase(String[] words) {
+		ArrayList<Postings> lists = new ArrayList<Postings>(words.length);
+		for (String word : words) {
+			Postings postings = postings(word);
+			if (postings == null) {
+				return new PostingList();
+			}
+			lists.add(postings);
+		}
+		return PhraseMatcher.match(lists);
 	}
 
 	/**
@@ -185,7 +585,7 @@ public class InvertedIndex {
 	 * @return # of words or keys in map
 	 */
 	public int size() {
-		return map.size();
+		return terms().size();
 	}
 
 	/**
@@ -195,10 +595,8 @@ public class InvertedIndex {
 	 * @return # of locations for the word in the inner map
 	 */
 	public int size(String word) {
-		if (map.containsKey(word)) {
-			return map.get(word).size();
-		}
-		return 0;
+		Postings postings = postings(word);
+		return postings == null ? 0 : postings.size();
 	}
 
 	/**
@@ -209,10 +607,8 @@ public class InvertedIndex {
 	 * @return # of positions of the word and location in the map
 	 */
 	public int size(String word, String location) {
-		if (contains(word, location)) {
-			return this.map.get(word).get(location).size();
-		}
-		return 0;
+		PositionList positions = positions(word, location);
+		return positions == null ? 0 : positions.size();
 	}
 
 	/**
@@ -222,7 +618,7 @@ public class InvertedIndex {
 	 * @return True if string is in the InvertedIndex
 	 */
 	public boolean contains(String word) {
-		return map.containsKey(word);
+		return postings(word) != null;
 	}
 
 	/**
@@ -234,7 +630,7 @@ public class InvertedIndex {
 	 * @return true if string is in index
 	 */
 	public boolean contains(String word, String location) {
-		return contains(word) && map.get(word).containsKey(location);
+		return positions(word, location) != null;
 	}
 
 	/**
@@ -246,12 +642,38 @@ public class InvertedIndex {
 	 * @return true if contains, false if not
 	 */
 	public boolean contains(String word, String location, int position) {
-		return contains(word) && map.get(word).get(location).contains(position);
+		PositionList positions = positions(word, location);
+		return positions != null && positions.contains(position);
+	}
+
+	/**
+	 * Looks up the positions of a word in a location.
+	 *
+	 * @param word     word in index
+	 * @param location the location of the word
+	 * @return the positions, or null if the word is not in the location
+	 */
+	private PositionList positions(String word, String location) {
+		Postings postings = postings(word);
+		int document = documents.id(location);
+		if (postings == null || document < 0) {
+			return null;
+		}
+		int index = postings.find(document);
+		return index < 0 ? null : postings.positions(index);
 	}
 
 	@Override
 	public String toString() {
-		return map.toString();
+		TreeMap<String, TreeMap<String, PositionList>> nested = new TreeMap<String, TreeMap<String, PositionList>>();
+		for (Entry<String, ? extends Postings> entry : terms().entrySet()) {
+			TreeMap<String, PositionList> locations = new TreeMap<String, PositionList>();
+			for (int i = 0; i < entry.getValue().size(); i++) {
+				locations.put(documents.location(entry.getValue().document(i)), entry.getValue().positions(i));
+			}
+			nested.put(entry.getKey(), locations);
+		}
+		return nested.toString();
 	}
 
 	/**
@@ -261,7 +683,7 @@ public class InvertedIndex {
 	 */
 
 	public Set<String> get() {
-		return Collections.unmodifiableSet(map.keySet());
+		return Collections.unmodifiableSet(terms().keySet());
 	}
 
 	/**
@@ -271,8 +693,13 @@ public class InvertedIndex {
 	 * @return set of keys, or an empty set if it is empty
 	 */
 	public Set<String> get(String word) {
-		if (contains(word)) {
-			return Collections.unmodifiableSet(map.get(word).keySet());
+		Postings postings = postings(word);
+		if (postings != null) {
+			TreeSet<String> locations = new TreeSet<String>();
+			for (int i = 0; i < postings.size(); i++) {
+				locations.add(documents.location(postings.document(i)));
+			}
+			return Collections.unmodifiableSet(locations);
 		}
 		return Collections.emptySet();
 	}
@@ -286,22 +713,140 @@ public class InvertedIndex {
 	 */
 	public Set<String> get(String word, String location) {
 		if (contains(word, location)) {
-			return Collections.unmodifiableSet(map.keySet());
+			return Collections.unmodifiableSet(terms().keySet());
 		}
 		return Collections.emptySet();
 	}
 
+	/**
+	 * Removes every word and location from the index.
+	 */
+	public void clear() {
+		map.clear();
+		documents.clear();
+	}
+
+	/**
+	 * Looks up the postings of a word.
+	 * 
+	 * @param word word in index
+	 * @return the postings, or null if the word is not in the index
+	 */
+	protected Postings postings(String word) {
+		return map.get(word);
+	}
+
+	/**
+	 * Looks up the postings of every word that starts with a prefix, in sorted
+	 * order of the words.
+	 * 
+	 * @param prefix prefix of the words
+	 * @return the postings of every matching word
+	 */
+	protected List<Postings> prefix(String prefix) {
+		ArrayList<Postings> list = new ArrayList<Postings>();
+		for (Entry<String, PostingList> entry : map.tailMap(prefix).entrySet()) {
+			if (!entry.getKey().startsWith(prefix)) {
+				break;
+			}
+			list.add(entry.getValue());
+		}
+		return list;
+	}
+
+	/**
+	 * Counts the words a stem matches and the postings in them, without copying
+	 * or reading any postings, so a search can be planned before it is run.
+	 * 
+	 * @param stem     the word, or the prefix of the words
+	 * @param exact    whether only the word itself matches
+	 * @param estimate where to add the counts
+	 */
+	protected void estimate(String stem, boolean exact, QueryPlanner.Estimate estimate) {
+		if (exact) {
+			PostingList postings = map.get(stem);
+			if (postings != null) {
+				estimate.add(postings.size());
+			}
+			return;
+		}
+		for (Entry<String, PostingList> entry : map.tailMap(stem).entrySet()) {
+			if (!entry.getKey().startsWith(stem)) {
+				break;
+			}
+			estimate.add(entry.getValue().size());
+		}
+	}
+
+	/**
+	 * Returns every word in the index mapped to its postings, iterated in sorted
+	 * order of the words.
+	 * 
+	 * @return the words and their postings
+	 */
+	protected Map<String, ? extends Postings> terms() {
+		return map;
+	}
+
+	/**
+	 * Returns the words that start with a prefix mapped to their postings,
+	 * iterated in sorted order of the words. Only the range of words with the
+	 * prefix is visited.
+	 * 
+	 * @param prefix prefix of the words; empty for every word
+	 * @return the matching words and their postings
+	 */
+	protected Map<String, ? extends Postings> terms(String prefix) {
+		return range(map, prefix);
+	}
+
+	/**
+	 * Returns the part of a sorted map with keys that start with a prefix. Every
+	 * such key sorts at or after the prefix and before the prefix with its last
+	 * character incremented, so the part is a view found in logarithmic time.
+	 * 
+	 * @param <V>    the type of the values
+	 * @param map    the map
+	 * @param prefix prefix of the keys; empty for every key
+	 * @return a view of the matching keys
+	 */
+	protected static <V> SortedMap<String, V> range(TreeMap<String, V> map, String prefix) {
+		int end = prefix.length();
+		while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) {
+			end--;
+		}
+		if (end == 0) {
+			return map.tailMap(prefix, true);
+		}
+		String after = prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
+		return map.subMap(prefix, true, after, false);
+	}
+
+	/**
+	 * Returns the document ids and word counts of every location.
+	 * 
+	 * @return the document table
+	 */
+	protected DocumentTable documents() {
+		return documents;
+	}
+
 	/**
 	 * Result Class for Queries
 	 * 
 	 * @author kyle
 	 *
 	 */
-	public class Result implements Comparable<Result> {
+	public static class Result implements Comparable<Result> {
 		/**
-		 * name of file
+		 * table used to resolve the document
 		 */
-		private String location;
+		private final DocumentTable documents;
+
+		/**
+		 * document id of file
+		 */
+		private final int document;
 
 		/**
 		 * count for query
@@ -316,14 +861,39 @@ public class InvertedIndex {
 		/**
 		 * cosntructor method
 		 * 
-		 * @param location location of file
+		 * @param documents table used to resolve the document
+		 * @param document  document id of file
 		 */
-		public Result(String location) {
-			this.location = location;
+		public Result(DocumentTable documents, int document) {
+			this.documents = documents;
+			this.document = document;
 			this.score = 0;
 			this.queryCount = 0;
 		}
 
+		/**
+		 * constructor method for a result that is already scored
+		 * 
+		 * @param documents  table used to resolve the document
+		 * @param document   document id of file
+		 * @param queryCount times the query words appear in the document
+		 * @param score      score of the document
+		 */
+		public Result(DocumentTable documents, int document, int queryCount, double score) {
+			this(documents, document);
+			this.queryCount = queryCount;
+			this.score = score;
+		}
+
+		/**
+		 * get method for the raw score
+		 * 
+		 * @return score
+		 */
+		public double getScore() {
+			return score;
+		}
+
 		@Override
 		/**
 		 * compares by score, count
@@ -334,7 +904,7 @@ public class InvertedIndex {
 		public int compareTo(Result o) {
 			if (Double.compare(o.score, score) == 0) {
 				if (Integer.compare(o.getCount(), getCount()) == 0) {
-					return location.compareToIgnoreCase(o.location);
+					return getLocation().compareToIgnoreCase(o.getLocation());
 				}
 				return Integer.compare(o.queryCount, queryCount);
 			} else {
@@ -349,37 +919,25 @@ public class InvertedIndex {
 		 * @return location
 		 */
 		public String getLocation() {
-			return location;
-		}
-
-		/**
-		 * get method for count
-		 * 
-		 * @return count
-		 */
-		public int getCount() {
-			return queryCount;
+			return documents.location(document);
 		}
 
 		/**
-		 * get method to reformat and get score
+		 * get method for document id
 		 * 
-		 * @param name file to get score from
-		 * @return score reformatted to a string
+		 * @return document id
 		 */
-		public String getScore(String name) {
-			String formatted = String.format("%.8f", score);
-			return formatted;
+		public int getDocument() {
+			return document;
 		}
 
 		/**
-		 * updates the index count
+		 * get method for count
 		 * 
-		 * @param word word in index
+		 * @return count
 		 */
-		private void update(String word) {
-			this.queryCount += map.get(word).get(location).size();
-			score = (double) queryCount / (double) countMap.get(location);
+		public int getCount() {
+			return queryCount;
 		}
 	}
 }
\ No newline at end of file
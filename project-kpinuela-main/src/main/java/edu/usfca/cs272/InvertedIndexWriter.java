@@ -1,15 +1,14 @@
 package edu.usfca.cs272;
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Map.Entry;
-import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Extends SimpleJSONwriter and takes in an arguement of the InvertedIndex
@@ -17,65 +16,277 @@ import java.util.TreeSet;
  * @author kyle
  */
 public class InvertedIndexWriter extends SimpleJsonWriter {
+	/**
+	 * number of ranges to split the words into for each worker, and to write
+	 * ahead of the next one to copy into the file
+	 */
+	public static final int RANGES = 4;
+
+	/**
+	 * about how many positions to put in each range at most, so a range held in
+	 * memory stays at a few megabytes
+	 */
+	public static final int RANGE_POSITIONS = 1 << 19;
 
 	/**
 	 * writes the data in JSON
 	 * 
-	 * @param map    Inverted Index
-	 * @param writer writer to form JSON
-	 * @param indent indents lines
+	 * @param map       Inverted Index
+	 * @param documents document table used to resolve locations
+	 * @param writer    writer to form JSON
+	 * @param indent    indents lines
 	 * @throws IOException if File is not Found
 	 */
-	public static void write(TreeMap<String, TreeMap<String, TreeSet<Integer>>> map, Writer writer, int indent)
+	public static void write(Map<String, ? extends Postings> map, DocumentTable documents, Writer writer, int indent)
 			throws IOException {
-		Iterator<Entry<String, TreeMap<String, TreeSet<Integer>>>> iterate;
+		int[] ranks = documents.ranks();
+		Iterator<? extends Entry<String, ? extends Postings>> iterate;
 		iterate = map.entrySet().iterator();
 		writer.write("{");
 		writer.write("\n");
 		if (iterate.hasNext()) {
-			writeIndent(writer, indent);
-			String key = iterate.next().getKey();
-			writeQuote(key, writer, indent + 1);
-			writer.write(": ");
-			writeNestedArray(map.get(key), writer, indent + 1);
+			Entry<String, ? extends Postings> entry = iterate.next();
+			writeTerm(entry.getKey(), entry.getValue(), true, documents, ranks, writer, indent);
 			while (iterate.hasNext()) {
-				writer.write(",");
-				writer.write("\n");
-				String next = iterate.next().getKey();
-				writeQuote(next, writer, indent + 1);
+				Entry<String, ? extends Postings> next = iterate.next();
+				writeTerm(next.getKey(), next.getValue(), false, documents, ranks, writer, indent);
+			}
+			writer.write("\n");
+		}
+		writeIndent("}", writer, indent);
+	}
+
+	/**
+	 * writes one word of the index and its postings, with the comma and newline
+	 * that separate it from the word before
+	 * 
+	 * @param word      the word
+	 * @param postings  postings of the word
+	 * @param first     whether the word is the first in the index
+	 * @param documents document table used to resolve locations
+	 * @param ranks     rank of each document id by location
+	 * @param writer    writer to form JSON
+	 * @param indent    indent of the whole index
+	 * @throws IOException if an IO error occurs
+	 */
+	private static void writeTerm(String word, Postings postings, boolean first, DocumentTable documents, int[] ranks,
+			Writer writer, int indent) throws IOException {
+		if (first) {
+			writeIndent(writer, indent);
+		} else {
+			writer.write(",");
+			writer.write("\n");
+		}
+		writeQuote(word, writer, indent + 1);
+		writer.write(": ");
+		writePostings(postings, documents, ranks, writer, indent + 1);
+	}
+
+	/**
+	 * writes the index to a file, splitting the words into ranges in sorted
+	 * order that the workers of a work queue write into memory at the same time.
+	 * The ranges are copied into the file in order as they finish, and only a
+	 * few ranges ahead of the next one to copy are written at once, so memory
+	 * stays bounded. The file comes out the same as
+	 * {@link #write(Map, DocumentTable, Path, JsonFormat)}, which is used instead when there
+	 * is only one worker. Waits on the work queue, so it must not be called from
+	 * one of its workers, and the index must not change until it returns.
+	 * 
+	 * @param map       Inverted Index
+	 * @param documents document table used to resolve locations
+	 * @param path      path of file
+	 * @param queue     the work queue to write ranges on
+	 * @param format    how to format and compress the file
+	 * @throws IOException if an IO error occurs
+	 */
+	public static void write(Map<String, ? extends Postings> map, DocumentTable documents, Path path,
+			WorkQueue queue, JsonFormat format) throws IOException {
+		ArrayList<String> words = new ArrayList<String>();
+		ArrayList<Postings> lists = new ArrayList<Postings>();
+		long total = 0;
+		for (Entry<String, ? extends Postings> entry : map.entrySet()) {
+			words.add(entry.getKey());
+			lists.add(entry.getValue());
+			total += cost(entry.getValue());
+		}
+		int workers = Math.max(1, queue.size());
+		if (words.isEmpty() || workers == 1) {
+			write(map, documents, path, format);
+			return;
+		}
+		int ranges = (int) Math.max(workers * RANGES, Math.min(words.size(), total / RANGE_POSITIONS));
+		ArrayList<Integer> starts = new ArrayList<Integer>(ranges + 1);
+		long done = 0;
+		int word = 0;
+		for (int r = 0; r < ranges && word < words.size(); r++) {
+			starts.add(word);
+			long goal = total * (r + 1) / ranges;
+			do {
+				done += cost(lists.get(word++));
+			} while (word < words.size() && done < goal);
+		}
+		starts.add(words.size());
+		int[] ranks = documents.ranks();
+		ArrayList<CompletableFuture<JsonChannelWriter>> parts = new ArrayList<CompletableFuture<JsonChannelWriter>>();
+		try (JsonChannelWriter writer = format.open(path)) {
+			writer.write("{");
+			writer.write("\n");
+			for (int r = 0; r < starts.size() - 1; r++) {
+				while (parts.size() < starts.size() - 1 && parts.size() < r + workers * RANGES) {
+					CompletableFuture<JsonChannelWriter> part = new CompletableFuture<JsonChannelWriter>();
+					int from = starts.get(parts.size());
+					int to = starts.get(parts.size() + 1);
+					parts.add(part);
+					queue.execute(() -> {
+						try {
+							JsonChannelWriter local = format.buffer();
+							for (int i = from; i < to; i++) {
+								writeTerm(words.get(i), lists.get(i), i == 0, documents, ranks, local, 0);
+							}
+							part.complete(local);
+						} catch (IOException | RuntimeException | Error e) {
+							part.completeExceptionally(e);
+						}
+					});
+				}
+				try {
+					writer.write(parts.get(r).join());
+				} catch (CompletionException e) {
+					if (e.getCause() instanceof IOException) {
+						throw (IOException) e.getCause();
+					}
+					if (e.getCause() instanceof RuntimeException) {
+						throw (RuntimeException) e.getCause();
+					}
+					if (e.getCause() instanceof Error) {
+						throw (Error) e.getCause();
+					}
+					throw e;
+				}
+				parts.set(r, null);
+			}
+			writer.write("\n");
+			writer.write("}");
+		}
+	}
+
+	/**
+	 * estimates how much writing out the postings of a word costs
+	 * 
+	 * @param postings postings of the word
+	 * @return one plus the number of locations and positions
+	 */
+	private static long cost(Postings postings) {
+		long cost = 1 + postings.size();
+		for (int i = 0; i < postings.size(); i++) {
+			cost += postings.frequency(i);
+		}
+		return cost;
+	}
+
+	/**
+	 * writes the locations and positions of one word in JSON, sorted by location
+	 * the same way as {@link #writeNestedArray(Map, Writer, int)}
+	 * 
+	 * @param postings  postings of the word
+	 * @param documents document table used to resolve locations
+	 * @param ranks     rank of each document id by location
+	 * @param writer    writer to form JSON
+	 * @param indent    indents lines
+	 * @throws IOException if an IO error occurs
+	 */
+	public static void writePostings(Postings postings, DocumentTable documents, int[] ranks, Writer writer,
+			int indent) throws IOException {
+		int[] order = postings.order(ranks);
+		writer.write("{");
+		writer.write("\n");
+		if (order.length > 0) {
+			for (int i = 0; i < order.length; i++) {
+				if (i > 0) {
+					writer.write(",");
+					writer.write("\n");
+				}
+				writeIndent(writer, indent);
+				writeQuote(documents.location(postings.document(order[i])), writer, indent);
 				writer.write(": ");
-				writeNestedArray(map.get(next), writer, indent + 1);
+				writePositions(postings.positions(order[i]), writer, indent + 1);
 			}
 			writer.write("\n");
 		}
 		writeIndent("}", writer, indent);
 	}
+
+	/**
+	 * writes positions as a JSON array the same way as
+	 * {@link #writeArray(java.util.Collection, Writer, int)}, without boxing
+	 * each one
+	 * 
+	 * @param positions the positions to write
+	 * @param writer    writer to form JSON
+	 * @param indent    indents lines
+	 * @throws IOException if an IO error occurs
+	 */
+	public static void writePositions(PositionList positions, Writer writer, int indent) throws IOException {
+		int[] values = positions.toIntArray();
+		writer.write("[");
+		writer.write("\n");
+		if (values.length > 0) {
+			for (int i = 0; i < values.length; i++) {
+				if (i > 0) {
+					writer.write(",");
+					writer.write("\n");
+				}
+				writeIndent(writer, indent + 1);
+				writeInt(values[i], writer);
+			}
+			writer.write("\n");
+		}
+		writeIndent("]", writer, indent);
+	}
+
 	/**
 	 * write method without the writer as a parameter
 	 * 
-	 * @param map  Inverted Index
-	 * @param path path of file
+	 * @param map       Inverted Index
+	 * @param documents document table used to resolve locations
+	 * @param path      path of file
 	 * @throws IOException if file is null
 	 */
-	public static void write(TreeMap<String, TreeMap<String, TreeSet<Integer>>> map, Path path) throws IOException {
-		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
-			write(map, writer, 0);
+	public static void write(Map<String, ? extends Postings> map, DocumentTable documents, Path path)
+			throws IOException {
+		write(map, documents, path, JsonFormat.PRETTY);
+	}
+
+	/**
+	 * writes the index to a file in the given format
+	 * 
+	 * @param map       Inverted Index
+	 * @param documents document table used to resolve locations
+	 * @param path      path of file
+	 * @param format    how to format and compress the file
+	 * @throws IOException if an IO error occurs
+	 */
+	public static void write(Map<String, ? extends Postings> map, DocumentTable documents, Path path,
+			JsonFormat format) throws IOException {
+		try (JsonChannelWriter writer = format.open(path)) {
+			write(map, documents, writer, 0);
 		}
 	}
 
 	/**
 	 * String version of write function
 	 * 
-	 * @param map  Inverted Index
-	 * @param path path of file
+	 * @param map       Inverted Index
+	 * @param documents document table used to resolve locations
+	 * @param path      path of file
 	 * @return string version of writer
 	 * @throws IOException if file is null
 	 */
-	public static String writeString(TreeMap<String, TreeMap<String, TreeSet<Integer>>> map, Path path)
+	public static String writeString(Map<String, ? extends Postings> map, DocumentTable documents, Path path)
 			throws IOException {
 		try {
 			StringWriter writer = new StringWriter();
-			write(map, writer, 0);
+			write(map, documents, writer, 0);
 			return writer.toString();
 		} catch (IOException e) {
 			return null;
@@ -0,0 +1,389 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Writes JSON text to a file as UTF-8, encoding straight into one reusable
+ * byte buffer and writing it out through a channel whenever it fills. Numbers
+ * can be written digit by digit with {@link #writeInt(int)} and
+ * {@link #writeScore(double)} instead of being turned into strings first. Any
+ * well-formed text comes out the same as with
+ * {@link java.nio.file.Files#newBufferedWriter}.
+ *
+ * A writer can also keep everything in memory instead, so part of a file can
+ * be written on another thread and copied into the file later with
+ * {@link #write(JsonChannelWriter)}.
+ *
+ * A compact writer drops the spaces, tabs and newlines written outside of
+ * strings, so the same pretty-printing code writes JSON without whitespace.
+ * Strings are followed the way a JSON parser reads them, so escaped quotes
+ * inside a key or value do not end it.
+ *
+ * Warning: This class is not thread-safe.
+ *
+ * @author kyle
+ */
+public class JsonChannelWriter extends Writer {
+	/**
+	 * size of the buffer in bytes
+	 */
+	public static final int BUFFER = 1 << 16;
+
+	/**
+	 * the largest score written without {@link String#format}, small enough that
+	 * scaling it by {@link #SCALE} keeps well under a hundredth of precision
+	 */
+	private static final double FAST_SCORES = 1e5;
+
+	/**
+	 * scale of the eight digits written after the decimal point of a score
+	 */
+	private static final long SCALE = 100000000L;
+
+	/**
+	 * the channel to write to, or null to keep everything in memory
+	 */
+	private final WritableByteChannel channel;
+
+	/**
+	 * whether whitespace outside of quotes is dropped
+	 */
+	private final boolean compact;
+
+	/**
+	 * whether the text written so far ends inside a string
+	 */
+	private boolean quoted;
+
+	/**
+	 * whether the last character written was a backslash escaping the next one
+	 * inside a string
+	 */
+	private boolean escaped;
+
+	/**
+	 * the bytes not yet written to the channel
+	 */
+	private byte[] bytes;
+
+	/**
+	 * the buffer wrapped around the bytes
+	 */
+	private ByteBuffer buffer;
+
+	/**
+	 * number of bytes used in the buffer
+	 */
+	private int count;
+
+	/**
+	 * a high surrogate waiting for the low surrogate of its pair, or 0 if none
+	 */
+	private char pending;
+
+	/**
+	 * Creates a writer to a channel, which is closed along with the writer.
+	 *
+	 * @param channel the channel to write to, or null to keep everything in
+	 *                memory
+	 * @param compact whether whitespace outside of quotes is dropped
+	 */
+	public JsonChannelWriter(WritableByteChannel channel, boolean compact) {
+		this.channel = channel;
+		this.compact = compact;
+		this.quoted = false;
+		this.escaped = false;
+		this.bytes = new byte[BUFFER];
+		this.buffer = ByteBuffer.wrap(bytes);
+		this.count = 0;
+		this.pending = 0;
+	}
+
+	/**
+	 * Creates a writer that keeps everything written in memory.
+	 *
+	 * @param compact whether whitespace outside of quotes is dropped
+	 */
+	public JsonChannelWriter(boolean compact) {
+		this(null, compact);
+	}
+
+	/**
+	 * Checks whether an ASCII character is whitespace to drop, keeping track of
+	 * whether it is inside a string and whether it is escaped.
+	 *
+	 * @param c the character
+	 * @return true if the character should not be written
+	 */
+	private boolean skip(char c) {
+		if (quoted) {
+			if (escaped) {
+				escaped = false;
+			} else if (c == '\\') {
+				escaped = true;
+			} else if (c == '"') {
+				quoted = false;
+			}
+			return false;
+		}
+		if (c == '"') {
+			quoted = true;
+			return false;
+		}
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+	}
+
+	/**
+	 * Checks whether whitespace outside of quotes is dropped.
+	 *
+	 * @return true if the writer is compact
+	 */
+	public boolean isCompact() {
+		return compact;
+	}
+
+	/**
+	 * Makes room for some bytes, writing the buffer out if there is not enough,
+	 * or growing it if everything is kept in memory.
+	 *
+	 * @param needed the number of bytes about to be added, at most
+	 *               {@link #BUFFER}
+	 * @throws IOException if an IO error occurs
+	 */
+	private void reserve(int needed) throws IOException {
+		if (count + needed > bytes.length) {
+			if (channel == null) {
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, count + needed));
+				buffer = ByteBuffer.wrap(bytes);
+			} else {
+				drain();
+			}
+		}
+	}
+
+	/**
+	 * Writes every byte in the buffer out to the channel.
+	 *
+	 * @throws IOException if an IO error occurs
+	 */
+	private void drain() throws IOException {
+		if (channel == null) {
+			return;
+		}
+		buffer.clear();
+		buffer.limit(count);
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		count = 0;
+	}
+
+	/**
+	 * Encodes one character, pairing up surrogates.
+	 *
+	 * @param c the character
+	 * @throws IOException if an IO error occurs
+	 */
+	private void put(char c) throws IOException {
+		if (pending != 0) {
+			char high = pending;
+			pending = 0;
+			if (Character.isLowSurrogate(c)) {
+				int code = Character.toCodePoint(high, c);
+				reserve(4);
+				bytes[count++] = (byte) (0xF0 | (code >> 18));
+				bytes[count++] = (byte) (0x80 | ((code >> 12) & 0x3F));
+				bytes[count++] = (byte) (0x80 | ((code >> 6) & 0x3F));
+				bytes[count++] = (byte) (0x80 | (code & 0x3F));
+				return;
+			}
+			reserve(1);
+			bytes[count++] = '?';
+		}
+		if (c < 0x80) {
+			reserve(1);
+			bytes[count++] = (byte) c;
+		} else if (c < 0x800) {
+			reserve(2);
+			bytes[count++] = (byte) (0xC0 | (c >> 6));
+			bytes[count++] = (byte) (0x80 | (c & 0x3F));
+		} else if (Character.isHighSurrogate(c)) {
+			pending = c;
+		} else if (Character.isLowSurrogate(c)) {
+			reserve(1);
+			bytes[count++] = '?';
+		} else {
+			reserve(3);
+			bytes[count++] = (byte) (0xE0 | (c >> 12));
+			bytes[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+			bytes[count++] = (byte) (0x80 | (c & 0x3F));
+		}
+	}
+
+	/**
+	 * Writes a high surrogate that never got its low surrogate as a question
+	 * mark.
+	 *
+	 * @throws IOException if an IO error occurs
+	 */
+	private void unpaired() throws IOException {
+		if (pending != 0) {
+			pending = 0;
+			reserve(1);
+			bytes[count++] = '?';
+		}
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		if (c < 0x80 && pending == 0) {
+			if (compact && skip((char) c)) {
+				return;
+			}
+			reserve(1);
+			bytes[count++] = (byte) c;
+		} else {
+			put((char) c);
+		}
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		int end = off + len;
+		for (int i = off; i < end; i++) {
+			char c = str.charAt(i);
+			if (c < 0x80 && pending == 0) {
+				if (compact && skip(c)) {
+					continue;
+				}
+				reserve(1);
+				bytes[count++] = (byte) c;
+			} else {
+				put(c);
+			}
+		}
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		int end = off + len;
+		for (int i = off; i < end; i++) {
+			char c = cbuf[i];
+			if (c < 0x80 && pending == 0) {
+				if (compact && skip(c)) {
+					continue;
+				}
+				reserve(1);
+				bytes[count++] = (byte) c;
+			} else {
+				put(c);
+			}
+		}
+	}
+
+	/**
+	 * Writes an int the same way as {@link Integer#toString(int)}, without
+	 * creating a string.
+	 *
+	 * @param value the int to write
+	 * @throws IOException if an IO error occurs
+	 */
+	public void writeInt(int value) throws IOException {
+		if (value == Integer.MIN_VALUE) {
+			write(Integer.toString(value));
+			return;
+		}
+		unpaired();
+		reserve(11);
+		if (value < 0) {
+			bytes[count++] = '-';
+			value = -value;
+		}
+		int digits = 1;
+		for (int rest = value / 10; rest > 0; rest /= 10) {
+			digits++;
+		}
+		int end = count + digits;
+		for (int i = end - 1; i >= count; i--) {
+			bytes[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		count = end;
+	}
+
+	/**
+	 * Writes a score with eight digits after the decimal point, the same way as
+	 * {@code String.format("%.8f", score)}. Scores that are negative, including
+	 * negative zero, very large, not a number, or too close to halfway between two
+	 * results for the rounding to be certain are handed to {@link String#format}
+	 * instead.
+	 *
+	 * @param score the score to write
+	 * @throws IOException if an IO error occurs
+	 */
+	public void writeScore(double score) throws IOException {
+		if (!(Double.doubleToRawLongBits(score) >= 0 && score < FAST_SCORES)) {
+			write(String.format("%.8f", score));
+			return;
+		}
+		double scaled = score * SCALE;
+		long whole = (long) scaled;
+		double fraction = scaled - whole;
+		if (Math.abs(fraction - 0.5) < 0.01) {
+			write(String.format("%.8f", score));
+			return;
+		}
+		long rounded = fraction > 0.5 ? whole + 1 : whole;
+		writeInt((int) (rounded / SCALE));
+		reserve(9);
+		bytes[count++] = '.';
+		long decimals = rounded % SCALE;
+		for (int i = count + 7; i >= count; i--) {
+			bytes[i] = (byte) ('0' + decimals % 10);
+			decimals /= 10;
+		}
+		count += 8;
+	}
+
+	/**
+	 * Copies everything another writer kept in memory, as is.
+	 *
+	 * @param other a writer that keeps everything in memory
+	 * @throws IOException if an IO error occurs
+	 */
+	public void write(JsonChannelWriter other) throws IOException {
+		other.unpaired();
+		if (channel == null || other.count <= bytes.length - count) {
+			reserve(other.count);
+			System.arraycopy(other.bytes, 0, bytes, count, other.count);
+			count += other.count;
+			return;
+		}
+		drain();
+		ByteBuffer copy = ByteBuffer.wrap(other.bytes, 0, other.count);
+		while (copy.hasRemaining()) {
+			channel.write(copy);
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		drain();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			unpaired();
+			drain();
+		} finally {
+			if (channel != null) {
+				channel.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * How a JSON file is written: pretty printed or compact, and compressed or
+ * not. The writers that take a path are handed one of these, and the settings
+ * are checked once when it is created.
+ *
+ * @author kyle
+ */
+public class JsonFormat {
+	/** Writes files without compressing them. */
+	public static final String NONE = "none";
+
+	/** Compresses files as one gzip stream. */
+	public static final String GZIP = "gzip";
+
+	/** Compresses files in independent gzip blocks at the fastest level. */
+	public static final String BLOCKS = "blocks";
+
+	/** Pretty printed and not compressed, the way files are written by default. */
+	public static final JsonFormat PRETTY = new JsonFormat(false, NONE);
+
+	/**
+	 * whether files are written without whitespace
+	 */
+	private final boolean compact;
+
+	/**
+	 * how files are compressed
+	 */
+	private final String compression;
+
+	/**
+	 * Constructor method
+	 *
+	 * @param compact     whether files are written without whitespace instead of
+	 *                    pretty printed
+	 * @param compression {@link #NONE}, {@link #GZIP} or {@link #BLOCKS}
+	 * @throws IllegalArgumentException if the compression is not one of those
+	 */
+	public JsonFormat(boolean compact, String compression) {
+		if (!compression.equals(NONE) && !compression.equals(GZIP) && !compression.equals(BLOCKS)) {
+			throw new IllegalArgumentException("Unknown compression " + compression);
+		}
+		this.compact = compact;
+		this.compression = compression;
+	}
+
+	/**
+	 * Checks whether files are written without whitespace.
+	 *
+	 * @return true if files are compact
+	 */
+	public boolean isCompact() {
+		return compact;
+	}
+
+	/**
+	 * Returns how files are compressed.
+	 *
+	 * @return {@link #NONE}, {@link #GZIP} or {@link #BLOCKS}
+	 */
+	public String compression() {
+		return compression;
+	}
+
+	/**
+	 * Opens a file to write to in this format, replacing anything already in it.
+	 *
+	 * @param path the file to write to
+	 * @return the writer, which must be closed to finish the file
+	 * @throws IOException if the file cannot be opened
+	 */
+	public JsonChannelWriter open(Path path) throws IOException {
+		if (compression.equals(GZIP)) {
+			OutputStream out = new GZIPOutputStream(Files.newOutputStream(path), JsonChannelWriter.BUFFER);
+			return new JsonChannelWriter(Channels.newChannel(out), compact);
+		}
+		FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		if (compression.equals(BLOCKS)) {
+			return new JsonChannelWriter(new GzipBlockChannel(file), compact);
+		}
+		return new JsonChannelWriter(file, compact);
+	}
+
+	/**
+	 * Creates a writer that keeps everything in memory in this format, to be
+	 * copied into a writer from {@link #open(Path)} later.
+	 *
+	 * @return the writer
+	 */
+	public JsonChannelWriter buffer() {
+		return new JsonChannelWriter(compact);
+	}
+}
@@ -0,0 +1,445 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A read-only index searched straight from a file written by
+ * {@link BinaryIndexWriter}. The file is memory-mapped, and words, document
+ * ids and positions are only read from it when a search or output needs them,
+ * so opening an index takes about the same time no matter how large it is.
+ * Only the document table is read into memory up front.
+ *
+ * Since nothing can change once it is opened, it is safe to search from any
+ * number of threads without locking.
+ *
+ * @author kyle
+ */
+public class MappedInvertedIndex extends InvertedIndex {
+	/**
+	 * The mapped file
+	 */
+	private final ByteBuffer buffer;
+
+	/**
+	 * Number of words
+	 */
+	private final int terms;
+
+	/**
+	 * Where the word offsets into the strings start
+	 */
+	private final int words;
+
+	/**
+	 * Where the posting offsets of each word start
+	 */
+	private final int offsets;
+
+	/**
+	 * Where the document ids start
+	 */
+	private final int documentIds;
+
+	/**
+	 * Where the frequencies start
+	 */
+	private final int frequencies;
+
+	/**
+	 * Where the position offsets start
+	 */
+	private final int positionOffsets;
+
+	/**
+	 * Where the strings start
+	 */
+	private final int strings;
+
+	/**
+	 * Where the encoded positions start
+	 */
+	private final int positions;
+
+	/**
+	 * Opens an index file.
+	 *
+	 * @param path the file written by {@link BinaryIndexWriter}
+	 * @throws IOException if the file cannot be read or is not an index file
+	 */
+	public MappedInvertedIndex(Path path) throws IOException {
+		this(map(path));
+	}
+
+	/**
+	 * Opens a mapped index file.
+	 *
+	 * @param buffer the mapped file
+	 */
+	private MappedInvertedIndex(ByteBuffer buffer) {
+		super(readDocuments(buffer));
+		this.buffer = buffer;
+		int size = buffer.getInt(8);
+		this.terms = buffer.getInt(12);
+		int postings = buffer.getInt(16);
+		int stringBytes = buffer.getInt(20);
+		this.words = 4 * (BinaryIndexWriter.HEADER + size + size + 1);
+		this.offsets = words + 4 * (terms + 1);
+		this.documentIds = offsets + 4 * (terms + 1);
+		this.frequencies = documentIds + 4 * postings;
+		this.positionOffsets = frequencies + 4 * postings;
+		this.strings = positionOffsets + 4 * (postings + 1);
+		this.positions = strings + stringBytes;
+	}
+
+	/**
+	 * Maps an index file into memory and checks its header.
+	 *
+	 * @param path the file to map
+	 * @return the mapped file
+	 * @throws IOException if the file cannot be read or is not an index file
+	 */
+	private static ByteBuffer map(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() < 4 * BinaryIndexWriter.HEADER) {
+				throw new IOException("Not an index file: " + path);
+			}
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt(0) != BinaryIndexWriter.MAGIC) {
+				throw new IOException("Not an index file: " + path);
+			}
+			if (buffer.getInt(4) != BinaryIndexWriter.VERSION) {
+				throw new IOException("Unsupported index version " + buffer.getInt(4) + ": " + path);
+			}
+			return buffer;
+		}
+	}
+
+	/**
+	 * Reads the document table at the start of a mapped index file.
+	 *
+	 * @param buffer the mapped file
+	 * @return the document table
+	 */
+	private static DocumentTable readDocuments(ByteBuffer buffer) {
+		int size = buffer.getInt(8);
+		int terms = buffer.getInt(12);
+		int postings = buffer.getInt(16);
+		int counts = 4 * BinaryIndexWriter.HEADER;
+		int locations = counts + 4 * size;
+		int strings = locations + 4 * (size + 1) + 8 * (terms + 1) + 4 * (3 * postings + 1);
+		DocumentTable documents = new DocumentTable();
+		for (int i = 0; i < size; i++) {
+			int start = buffer.getInt(locations + 4 * i);
+			int end = buffer.getInt(locations + 4 * (i + 1));
+			documents.add(string(buffer, strings + start, end - start), buffer.getInt(counts + 4 * i));
+		}
+		return documents;
+	}
+
+	/**
+	 * Decodes a UTF-8 string from the mapped file.
+	 *
+	 * @param buffer the mapped file
+	 * @param offset where the string starts
+	 * @param length number of bytes in the string
+	 * @return the string
+	 */
+	private static String string(ByteBuffer buffer, int offset, int length) {
+		byte[] bytes = new byte[length];
+		buffer.get(offset, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the word at an index.
+	 *
+	 * @param index the index of the word in sorted order
+	 * @return the word
+	 */
+	private String word(int index) {
+		int start = buffer.getInt(words + 4 * index);
+		int end = buffer.getInt(words + 4 * (index + 1));
+		return string(buffer, strings + start, end - start);
+	}
+
+	/**
+	 * Finds the index of a word, or where it would be inserted.
+	 *
+	 * @param word the word to look for
+	 * @return the index of the word, or (-(insertion point) - 1) if it is not
+	 *         in the index
+	 */
+	private int search(String word) {
+		int low = 0;
+		int high = terms - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int compare = word(middle).compareTo(word);
+			if (compare < 0) {
+				low = middle + 1;
+			} else if (compare > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * Not supported, the index is read-only.
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public void add(String word, String path, int value) {
+		throw new UnsupportedOperationException("Index is read-only");
+	}
+
+	/**
+	 * Not supported, the index is read-only.
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public void addAll(InvertedIndex local) {
+		throw new UnsupportedOperationException("Index is read-only");
+	}
+
+	/**
+	 * Not supported, the index is read-only.
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public void clear() {
+		throw new UnsupportedOperationException("Index is read-only");
+	}
+
+	@Override
+	protected Postings postings(String word) {
+		int index = search(word);
+		return index < 0 ? null : new Range(index);
+	}
+
+	@Override
+	protected List<Postings> prefix(String prefix) {
+		ArrayList<Postings> list = new ArrayList<Postings>();
+		int index = search(prefix);
+		for (int i = index < 0 ? -index - 1 : index; i < terms && word(i).startsWith(prefix); i++) {
+			list.add(new Range(i));
+		}
+		return list;
+	}
+
+	/**
+	 * Counts a prefix from its range of words and the offsets alone, finding
+	 * the range with binary searches.
+	 */
+	@Override
+	protected void estimate(String stem, boolean exact, QueryPlanner.Estimate estimate) {
+		int index = search(stem);
+		if (exact) {
+			if (index >= 0) {
+				estimate.add(offset(index + 1) - offset(index));
+			}
+			return;
+		}
+		int start = index < 0 ? -index - 1 : index;
+		int end = upper(stem, start);
+		estimate.add(end - start, offset(end) - offset(start));
+	}
+
+	/**
+	 * Finds the first word at or after a prefix.
+	 *
+	 * @param prefix the prefix
+	 * @return index of the first word that sorts at or after the prefix
+	 */
+	private int lower(String prefix) {
+		int index = search(prefix);
+		return index < 0 ? -index - 1 : index;
+	}
+
+	/**
+	 * Finds the end of the range of words that start with a prefix.
+	 *
+	 * @param prefix the prefix
+	 * @param lower  index of the first word at or after the prefix
+	 * @return one past the index of the last word with the prefix
+	 */
+	private int upper(String prefix, int lower) {
+		int low = lower;
+		int high = terms;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (word(middle).startsWith(prefix)) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns where the postings of a word start.
+	 *
+	 * @param word index of the word, or the number of words for the end
+	 * @return the offset of the word's first posting
+	 */
+	private int offset(int word) {
+		return buffer.getInt(offsets + 4 * word);
+	}
+
+	@Override
+	protected Map<String, ? extends Postings> terms() {
+		return terms(0, terms);
+	}
+
+	/**
+	 * Returns the range of words with the prefix, found with binary searches.
+	 */
+	@Override
+	protected Map<String, ? extends Postings> terms(String prefix) {
+		int start = lower(prefix);
+		return terms(start, upper(prefix, start));
+	}
+
+	/**
+	 * Returns a range of words mapped to their postings, in sorted order.
+	 *
+	 * @param start index of the first word
+	 * @param end   one past the index of the last word
+	 * @return the words and their postings
+	 */
+	private Map<String, Postings> terms(int start, int end) {
+		return new AbstractMap<String, Postings>() {
+			@Override
+			public Set<Entry<String, Postings>> entrySet() {
+				return new AbstractSet<Entry<String, Postings>>() {
+					@Override
+					public Iterator<Entry<String, Postings>> iterator() {
+						return new Iterator<Entry<String, Postings>>() {
+							/**
+							 * index of the next word
+							 */
+							private int next = start;
+
+							@Override
+							public boolean hasNext() {
+								return next < end;
+							}
+
+							@Override
+							public Entry<String, Postings> next() {
+								if (next >= end) {
+									throw new NoSuchElementException();
+								}
+								Range range = new Range(next);
+								return new SimpleImmutableEntry<String, Postings>(word(next++), range);
+							}
+						};
+					}
+
+					@Override
+					public int size() {
+						return end - start;
+					}
+				};
+			}
+
+			@Override
+			public Postings get(Object key) {
+				if (!(key instanceof String)) {
+					return null;
+				}
+				int index = search((String) key);
+				return index >= start && index < end ? new Range(index) : null;
+			}
+
+			@Override
+			public boolean containsKey(Object key) {
+				return get(key) != null;
+			}
+		};
+	}
+
+	/**
+	 * The postings of one word, read from its range of the mapped file
+	 */
+	private class Range implements Postings {
+		/**
+		 * start of the range
+		 */
+		private final int start;
+
+		/**
+		 * number of documents in the range
+		 */
+		private final int size;
+
+		/**
+		 * Constructor method
+		 *
+		 * @param word index of the word
+		 */
+		public Range(int word) {
+			this.start = buffer.getInt(offsets + 4 * word);
+			this.size = buffer.getInt(offsets + 4 * (word + 1)) - start;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public int document(int index) {
+			return buffer.getInt(documentIds + 4 * (start + index));
+		}
+
+		@Override
+		public int frequency(int index) {
+			return buffer.getInt(frequencies + 4 * (start + index));
+		}
+
+		@Override
+		public PositionList positions(int index) {
+			int from = buffer.getInt(positionOffsets + 4 * (start + index));
+			int to = buffer.getInt(positionOffsets + 4 * (start + index + 1));
+			return PositionList.read(buffer, positions + from, to - from, frequency(index));
+		}
+
+		@Override
+		public int find(int document) {
+			int low = 0;
+			int high = size - 1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				int value = document(middle);
+				if (value < document) {
+					low = middle + 1;
+				} else if (value > document) {
+					high = middle - 1;
+				} else {
+					return middle;
+				}
+			}
+			return -(low + 1);
+		}
+	}
+}
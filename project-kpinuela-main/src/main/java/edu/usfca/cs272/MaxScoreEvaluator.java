@@ -0,0 +1,162 @@
+package edu.usfca.cs272;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import edu.usfca.cs272.InvertedIndex.Result;
+
+/**
+ * Finds the best k results of a search one document at a time with the
+ * MaxScore algorithm, instead of scoring every document in every posting list.
+ *
+ * Each posting list has an upper bound on the score it can add to a single
+ * document. Lists are ordered by that bound, and once the k-th best score so
+ * far is higher than the sum of the smallest bounds, those lists become
+ * non-essential: a document that only appears in them cannot make the top k,
+ * so only documents in the remaining lists are visited, and the non-essential
+ * lists are only probed for those documents while the bound still allows it.
+ *
+ * The results are the same as sorting every result and keeping the first k.
+ * Documents that make it past the bounds are scored again with the lists in
+ * their original order, so rounding comes out the same as in a full search.
+ *
+ * @author kyle
+ */
+public class MaxScoreEvaluator {
+	/**
+	 * The most posting lists worth evaluating this way. Every candidate document
+	 * is looked up in each list that may still add to it, so past this many lists
+	 * scoring every document is cheaper.
+	 */
+	public static final int LISTS = 32;
+
+	/**
+	 * How far below the k-th best score a bound must be before a document is
+	 * skipped, relative to that score. Scores are sums of quotients while bounds
+	 * are sums of separately rounded quotients, so a small margin keeps rounding
+	 * from skipping a document that ties.
+	 */
+	private static final double MARGIN = 1e-9;
+
+	/**
+	 * Returns the best results over a set of posting lists. A document's count is
+	 * the sum of its frequencies over every list, the same as a full search over
+	 * the same lists.
+	 *
+	 * @param lists     the posting lists of every matching word; may repeat
+	 * @param documents the document table the lists refer to
+	 * @param k         the most results to return; should be greater than 0
+	 * @param scorer    how to score the results
+	 * @return array list of the best k Results, sorted
+	 */
+	public static ArrayList<Result> search(List<? extends Postings> lists, DocumentTable documents, int k,
+			Scorer scorer) {
+		int n = lists.size();
+		if (k <= 0 || n == 0) {
+			return new ArrayList<Result>();
+		}
+		Scorer.Term[] terms = new Scorer.Term[n];
+		double[] bounds = new double[n];
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			Postings list = lists.get(i);
+			terms[i] = scorer.term(list.size(), documents);
+			bounds[i] = terms[i].bound(list, documents);
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(bounds[a], bounds[b]));
+		Postings[] sorted = new Postings[n];
+		Scorer.Term[] scorers = new Scorer.Term[n];
+		int[] original = new int[n];
+		double[] sums = new double[n];
+		for (int i = 0; i < n; i++) {
+			original[i] = order[i];
+			sorted[i] = lists.get(original[i]);
+			scorers[i] = terms[original[i]];
+			sums[i] = (i == 0 ? 0 : sums[i - 1]) + bounds[original[i]];
+		}
+		int[] cursors = new int[n];
+		int[] found = new int[n];
+
+		PriorityQueue<Result> heap = new PriorityQueue<Result>(k + 1, Collections.reverseOrder());
+		double threshold = 0;
+		int essential = 0;
+		while (true) {
+			int document = -1;
+			for (int i = essential; i < n; i++) {
+				if (cursors[i] < sorted[i].size()) {
+					int next = sorted[i].document(cursors[i]);
+					if (document < 0 || next < document) {
+						document = next;
+					}
+				}
+			}
+			if (document < 0) {
+				break;
+			}
+			int length = documents.count(document);
+			int count = 0;
+			double score = 0;
+			for (int i = essential; i < n; i++) {
+				if (cursors[i] < sorted[i].size() && sorted[i].document(cursors[i]) == document) {
+					int frequency = sorted[i].frequency(cursors[i]);
+					count += frequency;
+					score = scorers[i].score(score, count, frequency, length);
+					found[original[i]] = frequency;
+					cursors[i]++;
+				}
+			}
+			boolean skipped = false;
+			for (int i = essential - 1; i >= 0; i--) {
+				if (score + sums[i] < threshold * (1 - MARGIN)) {
+					skipped = true;
+					break;
+				}
+				cursors[i] = sorted[i].advance(document, cursors[i]);
+				if (cursors[i] < sorted[i].size() && sorted[i].document(cursors[i]) == document) {
+					int frequency = sorted[i].frequency(cursors[i]);
+					count += frequency;
+					score = scorers[i].score(score, count, frequency, length);
+					found[original[i]] = frequency;
+				}
+			}
+			if (!skipped) {
+				count = 0;
+				score = 0;
+			}
+			for (int i = 0; i < n; i++) {
+				if (found[i] > 0) {
+					if (!skipped) {
+						count += found[i];
+						score = terms[i].score(score, count, found[i], length);
+					}
+					found[i] = 0;
+				}
+			}
+			if (skipped) {
+				continue;
+			}
+			Result result = new Result(documents, document, count, score);
+			if (heap.size() < k) {
+				heap.add(result);
+			} else if (result.compareTo(heap.peek()) < 0) {
+				heap.poll();
+				heap.add(result);
+			} else {
+				continue;
+			}
+			if (heap.size() == k) {
+				threshold = heap.peek().getScore();
+				while (essential < n && sums[essential] < threshold * (1 - MARGIN)) {
+					essential++;
+				}
+			}
+		}
+		ArrayList<Result> best = new ArrayList<Result>(heap);
+		Collections.sort(best);
+		return best;
+	}
+}
@@ -3,6 +3,7 @@ package edu.usfca.cs272;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -15,12 +16,184 @@ public class MultiThreadInvertedIndex extends InvertedIndex {
 	 */
 	private final SimpleReadWriteLock lock;
 
+	/**
+	 * read-only copy of the index once it has been frozen, or null until then
+	 */
+	private volatile InvertedIndex frozen;
+
+	/**
+	 * the latest published read-only copy of the index
+	 */
+	private volatile InvertedIndex snapshot;
+
+	/**
+	 * number of snapshots published so far, only changed after the snapshot is
+	 * published
+	 */
+	private volatile long generation;
+
 	/**
 	 * Initializes an thread safe Inverted Index
 	 */
 	public MultiThreadInvertedIndex() {
-		super();
+		this(new DocumentTable());
+	}
+
+	/**
+	 * Initializes a thread safe Inverted Index that starts with the given
+	 * documents
+	 *
+	 * @param documents document ids and word counts of every location
+	 */
+	protected MultiThreadInvertedIndex(DocumentTable documents) {
+		super(documents);
 		this.lock = new SimpleReadWriteLock();
+		this.frozen = null;
+		this.snapshot = new FrozenInvertedIndex(new InvertedIndex());
+		this.generation = 0;
+	}
+
+	/**
+	 * Publishes a read-only copy of the index as it is right now as the new
+	 * snapshot. Adds are blocked while the copy is built, but searches on the
+	 * previous snapshot are not. Positions are shared with the copy, and the index
+	 * copies them again before changing them.
+	 *
+	 * @return the generation of the published snapshot
+	 */
+	public synchronized long publish() {
+		InvertedIndex frozen = this.frozen;
+		if (frozen != null) {
+			return publish(frozen);
+		}
+		lockRead();
+		try {
+			return publish(new FrozenInvertedIndex(this));
+		} finally {
+			unlockRead();
+		}
+	}
+
+	/**
+	 * Publishes a read-only index as the new snapshot.
+	 *
+	 * @param snapshot the index to publish, which must never change
+	 * @return the generation of the published snapshot
+	 */
+	protected synchronized long publish(InvertedIndex snapshot) {
+		this.snapshot = snapshot;
+		return ++generation;
+	}
+
+	/**
+	 * Returns the latest published snapshot. It never changes, so it can be
+	 * searched without locking or blocking on adds.
+	 *
+	 * @return the latest published read-only copy of the index
+	 * @see #publish()
+	 */
+	public InvertedIndex snapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Returns the number of snapshots published so far. The generation goes up
+	 * after the new snapshot is in place, so a snapshot taken after reading the
+	 * generation is never older than it.
+	 *
+	 * @return the generation of the latest snapshot
+	 */
+	public long generation() {
+		return generation;
+	}
+
+	/**
+	 * Compacts the index into a read-only {@link FrozenInvertedIndex} once it is
+	 * done being built. Every read after this goes straight to the frozen copy
+	 * without locking, and any further add throws an exception until the index is
+	 * cleared.
+	 */
+	public void freeze() {
+		lock.writeLock().lock();
+		try {
+			if (frozen == null) {
+				FrozenInvertedIndex copy = new FrozenInvertedIndex(this);
+				clear();
+				frozen = copy;
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+		publish();
+	}
+
+	/**
+	 * Replaces the contents of the index with a file saved by
+	 * {@link #save(Path)}. The file is searched in place, so the index is frozen
+	 * once it is loaded.
+	 *
+	 * @param path the file to load
+	 * @throws IOException if the file cannot be read or is not an index file
+	 */
+	public void load(Path path) throws IOException {
+		MappedInvertedIndex mapped = new MappedInvertedIndex(path);
+		mapped.parallel(this);
+		lock.writeLock().lock();
+		try {
+			clear();
+			frozen = mapped;
+		} finally {
+			lock.writeLock().unlock();
+		}
+		publish();
+	}
+
+	/**
+	 * Splits searches up the same way in the frozen index and the latest
+	 * snapshot, which are the copies that are actually searched.
+	 */
+	@Override
+	public void parallel(WorkQueue queue, int threshold) {
+		super.parallel(queue, threshold);
+		InvertedIndex frozen = this.frozen;
+		if (frozen != null) {
+			frozen.parallel(queue, threshold);
+		}
+		snapshot.parallel(queue, threshold);
+	}
+
+	/**
+	 * Checks whether the index has been frozen.
+	 *
+	 * @return true if the index is read-only
+	 */
+	public boolean isFrozen() {
+		return frozen != null;
+	}
+
+	/**
+	 * Returns the lock guarding the index.
+	 *
+	 * @return the read write lock
+	 */
+	protected SimpleReadWriteLock lock() {
+		return lock;
+	}
+
+	/**
+	 * Locks the index for reading. Every read of the live index goes through
+	 * this, so an index that guards its words with finer grained locks can take
+	 * those instead.
+	 */
+	protected void lockRead() {
+		lock.readLock().lock();
+	}
+
+	/**
+	 * Unlocks the index locked by {@link #lockRead()}.
+	 */
+	protected void unlockRead() {
+		lock.readLock().unlock();
 	}
 
 	/**
@@ -33,22 +206,62 @@ public class MultiThreadInvertedIndex extends InvertedIndex {
 	}
 
 	@Override
-	public void indexWrite(Path path) throws IOException {
-		lock.readLock().lock();
+	public void indexWrite(Path path, JsonFormat format) throws IOException {
+		InvertedIndex frozen = this.frozen;
+		if (frozen != null) {
+			frozen.indexWrite(path, format);
+			return;
+		}
+		lockRead();
 		try {
-			super.indexWrite(path);
+			super.indexWrite(path, format);
 		} finally {
-			lock.readLock().unlock();
+			unlockRead();
 		}
 	}
 
 	@Override
-	public void countWrite(Path path) throws IOException {
-		lock.readLock().lock();
+	public void indexWrite(Path path, WorkQueue queue, JsonFormat format) throws IOException {
+		InvertedIndex frozen = this.frozen;
+		if (frozen != null) {
+			frozen.indexWrite(path, queue, format);
+			return;
+		}
+		lockRead();
+		try {
+			super.indexWrite(path, queue, format);
+		} finally {
+			unlockRead();
+		}
+	}
+
+	@Override
+	public void save(Path path) throws IOException {
+		InvertedIndex frozen = this.frozen;
+		if (frozen != null) {
+			frozen.save(path);
+			return;
+		}
+		lockRead();
+		try {
+			super.save(path);
+		} finally {
+			unlockRead();
+		}
+	}
+
+	@Override
+	public void countWrite(Path path, JsonFormat format) throws IOException {
+		InvertedIndex frozen = this.frozen;
+		if (frozen != null) {
+			frozen.countWrite(path, format);
+			return;
+		}
+		lockRead();
 		try {
-			super.countWrite(path);
+			super.countWrite(path, format);
 		} finally {
-			lock.readLock().unlock();
+			unlockRead();
 		}
 	}
 
@@ -56,6 +269,7 @@ public class MultiThreadInvertedIndex extends InvertedIndex {
 	public void add(String location, String path, int value) throws IOException {
 		lock.writeLock().lock();
 		try {
+			checkNotFrozen();
 			super.add(location, path, value);
 		} finally {
 			lock.writeLock().unlock();
@@ -64,132 +278,226 @@ public class MultiThreadInvertedIndex extends InvertedIndex {
 
 	@Override
 	public int getWordCount(String path) {
-		lock.readLock().lock();
+		InvertedIndex frozen = this.frozen;
+		if (frozen != null) {
+			return frozen.getWordCount(path);
+		}
+		lockRead();
 		try {
 			return super.getWordCount(path);
 		} finally {
-			lock.readLock().unlock();
+			unlockRead();
 		}
 	}
 
 	@Override
-	public ArrayList<Result> exactSearch(Set<String> queryStems) {
-		lock.readLock().lock();
+	public ArrayList<Result> search(Set<String> queryStems, boolean exact, Scorer scorer) {
+		InvertedIndex frozen = this.frozen;
+		if (frozen != null) {
+			return frozen.search(queryStems, exact, scorer);
+		}
+		lockRead();
 		try {
-			return super.exactSearch(queryStems);
+			return super.search(queryStems, exact, scorer);
 		} finally {
-			lock.readLock().unlock();
+			unlockRead();
 		}
 	}
 
 	@Override
-	public ArrayList<Result> partialSearch(Set<String> queryStems) {
-		lock.readLock().lock();
+	public ArrayList<Result> search(BooleanQuery query, boolean exact, int k, Scorer scorer) {
+		InvertedIndex frozen = this.frozen;
+		if (frozen != null) {
+			return frozen.search(query, exact, k, scorer);
+		}
+		lockRead();
+		try {
+			return super.search(query, exact, k, scorer);
+		} finally {
+			unlockRead();
+		}
+	}
+
+	@Override
+	public ArrayList<ArrayList<Result>> search(List<Set<String>> queries, boolean exact, int k, WorkQueue queue) {
+		InvertedIndex frozen = this.frozen;
+		if (frozen != null) {
+			return frozen.search(queries, exact, k, queue);
+		}
+		lockRead();
+		try {
+			return super.search(queries, exact, k, queue);
+		} finally {
+			unlockRead();
+		}
+	}
+
+	@Override
+	public String explain(Set<String> queryStems, boolean exact, int k, Scorer scorer) {
+		InvertedIndex frozen = this.frozen;
+		if (frozen != null) {
+			return frozen.explain(queryStems, exact, k, scorer);
+		}
+		lockRead();
 		try {
-			return super.partialSearch(queryStems);
+			return super.explain(queryStems, exact, k, scorer);
 		} finally {
-			lock.readLock().unlock();
+			unlockRead();
+		}
+	}
+
+	@Override
+	public ArrayList<Result> search(Set<String> queryStems, boolean exact, int k, Scorer scorer) {
+		InvertedIndex frozen = this.frozen;
+		if (frozen != null) {
+			return frozen.search(queryStems, exact, k, scorer);
+		}
+		lockRead();
+		try {
+			return super.search(queryStems, exact, k, scorer);
+		} finally {
+			unlockRead();
 		}
 	}
 
 	@Override
 	public int size() {
-		lock.readLock().lock();
+		InvertedIndex frozen = this.frozen;
+		if (frozen != null) {
+			return frozen.size();
+		}
+		lockRead();
 		try {
 			return super.size();
 		} finally {
-			lock.readLock().unlock();
+			unlockRead();
 		}
 	}
 
 	@Override
 	public int size(String word) {
-		lock.readLock().lock();
+		InvertedIndex frozen = this.frozen;
+		if (frozen != null) {
+			return frozen.size(word);
+		}
+		lockRead();
 		try {
 			return super.size(word);
 		} finally {
-			lock.readLock().unlock();
+			unlockRead();
 		}
 	}
 
 	@Override
 	public int size(String word, String location) {
 
-		lock.readLock().lock();
+		InvertedIndex frozen = this.frozen;
+		if (frozen != null) {
+			return frozen.size(word, location);
+		}
+		lockRead();
 		try {
 			return super.size(word, location);
 		} finally {
-			lock.readLock().unlock();
+			unlockRead();
 		}
 	}
 
 	@Override
 	public boolean contains(String word) {
-		lock.readLock().lock();
+		InvertedIndex frozen = this.frozen;
+		if (frozen != null) {
+			return frozen.contains(word);
+		}
+		lockRead();
 		try {
 			return super.contains(word);
 		} finally {
-			lock.readLock().unlock();
+			unlockRead();
 		}
 	}
 
 	@Override
 	public boolean contains(String word, String location) {
-		lock.readLock().lock();
+		InvertedIndex frozen = this.frozen;
+		if (frozen != null) {
+			return frozen.contains(word, location);
+		}
+		lockRead();
 		try {
 			return super.contains(word, location);
 		} finally {
-			lock.readLock().unlock();
+			unlockRead();
 		}
 	}
 
 	@Override
 	public boolean contains(String word, String location, int position) {
-		lock.readLock().lock();
+		InvertedIndex frozen = this.frozen;
+		if (frozen != null) {
+			return frozen.contains(word, location, position);
+		}
+		lockRead();
 		try {
 			return super.contains(word, location, position);
 		} finally {
-			lock.readLock().unlock();
+			unlockRead();
 		}
 	}
 
 	@Override
 	public String toString() {
-		lock.readLock().lock();
+		InvertedIndex frozen = this.frozen;
+		if (frozen != null) {
+			return frozen.toString();
+		}
+		lockRead();
 		try {
 			return super.toString();
 		} finally {
-			lock.readLock().unlock();
+			unlockRead();
 		}
 	}
 
 	@Override
 	public Set<String> get() {
-		lock.readLock().lock();
+		InvertedIndex frozen = this.frozen;
+		if (frozen != null) {
+			return frozen.get();
+		}
+		lockRead();
 		try {
 			return super.get();
 		} finally {
-			lock.readLock().unlock();
+			unlockRead();
 		}
 	}
 
 	@Override
 	public Set<String> get(String word) {
-		lock.readLock().lock();
+		InvertedIndex frozen = this.frozen;
+		if (frozen != null) {
+			return frozen.get(word);
+		}
+		lockRead();
 		try {
 			return super.get(word);
 		} finally {
-			lock.readLock().unlock();
+			unlockRead();
 		}
 	}
 
 	@Override
 	public Set<String> get(String word, String location) {
-		lock.readLock().lock();
+		InvertedIndex frozen = this.frozen;
+		if (frozen != null) {
+			return frozen.get(word, location);
+		}
+		lockRead();
 		try {
 			return super.get(word, location);
 		} finally {
-			lock.readLock().unlock();
+			unlockRead();
 		}
 	}
 
@@ -197,10 +505,33 @@ public class MultiThreadInvertedIndex extends InvertedIndex {
 	public void addAll(InvertedIndex local) {
 		lock.writeLock().lock();
 		try {
+			checkNotFrozen();
 			super.addAll(local);
 		} finally {
 			lock.writeLock().unlock();
 		}
 	}
 
-}
\ No newline at end of file
+	@Override
+	public void clear() {
+		lock.writeLock().lock();
+		try {
+			super.clear();
+			frozen = null;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Throws an exception if the index has been frozen. Must be called while
+	 * holding the write lock.
+	 *
+	 * @throws IllegalStateException if the index is frozen
+	 */
+	private void checkNotFrozen() {
+		if (frozen != null) {
+			throw new IllegalStateException("Index is frozen");
+		}
+	}
+}
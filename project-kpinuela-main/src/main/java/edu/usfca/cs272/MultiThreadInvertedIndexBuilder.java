@@ -20,12 +20,35 @@ public class MultiThreadInvertedIndexBuilder extends InvertedIndexBuilder {
 	 */
 	public static void build(Path start, MultiThreadInvertedIndex map, WorkQueue queue)
 			throws IOException, NullPointerException {
-		if (Files.isDirectory(start)) {
-			traverseDirectory(start, map, queue);
-		} else {
-			queue.execute(new Task(start, map));
+		build(start, map, queue, 0);
+	}
+
+	/**
+	 * @param start First path that is either file or directory
+	 * @param map   multithreaded inverted index
+	 * @param queue The Work Queue
+	 * @param flush number of positions each worker adds to its own local index
+	 *              before adding it to the shared one, or 0 to add each file
+	 *              as soon as it is read
+	 * @throws IOException          IOException
+	 * @throws NullPointerException NullPointerException
+	 * @see WorkerIndexes
+	 */
+	public static void build(Path start, MultiThreadInvertedIndex map, WorkQueue queue, int flush)
+			throws IOException, NullPointerException {
+		WorkerIndexes locals = flush > 0 ? new WorkerIndexes(map, flush) : null;
+		try {
+			if (Files.isDirectory(start)) {
+				traverseDirectory(start, map, queue, locals);
+			} else {
+				queue.execute(new Task(start, map, locals));
+			}
+		} finally {
+			queue.finish();
+			if (locals != null) {
+				locals.finish();
+			}
 		}
-		queue.finish();
 	}
 
 	/**
@@ -34,17 +57,19 @@ public class MultiThreadInvertedIndexBuilder extends InvertedIndexBuilder {
 	 * @param directory the directory to be traversed
 	 * @param index     the InvertedIndex where the files will be added
 	 * @param queue     the work queue
+	 * @param locals    the local index of each worker, or null to add each file
+	 *                  as soon as it is read
 	 * @throws IOException          if FileNotFound
 	 * @throws NullPointerException if value is null
 	 */
-	private static void traverseDirectory(Path directory, MultiThreadInvertedIndex index, WorkQueue queue)
-			throws IOException, NullPointerException {
+	private static void traverseDirectory(Path directory, MultiThreadInvertedIndex index, WorkQueue queue,
+			WorkerIndexes locals) throws IOException, NullPointerException {
 		try (DirectoryStream<Path> listing = Files.newDirectoryStream(directory)) {
 			for (Path path : listing) {
 				if (Files.isDirectory(path)) {
-					traverseDirectory(path, index, queue);
+					traverseDirectory(path, index, queue, locals);
 				} else if (InvertedIndexBuilder.isTextFile(path)) {
-					queue.execute(new Task(path, index));
+					queue.execute(new Task(path, index, locals));
 				}
 			}
 		}
@@ -66,12 +91,20 @@ public class MultiThreadInvertedIndexBuilder extends InvertedIndexBuilder {
 		private final MultiThreadInvertedIndex index;
 
 		/**
-		 * @param file  file path
-		 * @param index the inverted index
+		 * The local index of each worker, or null to add the file on its own
 		 */
-		public Task(Path file, MultiThreadInvertedIndex index) {
+		private final WorkerIndexes locals;
+
+		/**
+		 * @param file   file path
+		 * @param index  the inverted index
+		 * @param locals the local index of each worker, or null to add the file
+		 *               on its own
+		 */
+		public Task(Path file, MultiThreadInvertedIndex index, WorkerIndexes locals) {
 			this.file = file;
 			this.index = index;
+			this.locals = locals;
 		}
 
 		/**
@@ -86,7 +119,11 @@ public class MultiThreadInvertedIndexBuilder extends InvertedIndexBuilder {
 			} catch (IOException e) {
 				throw new UncheckedIOException(e);
 			}
-			index.addAll(local);
+			if (locals != null) {
+				locals.add(local);
+			} else {
+				index.addAll(local);
+			}
 		}
 	}
 }
\ No newline at end of file
@@ -1,8 +1,15 @@
 package edu.usfca.cs272;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 
@@ -30,6 +37,32 @@ public class MultiThreadQueryParser implements QueryParserInterface {
 	 */
 	private final WorkQueue queue;
 
+	/**
+	 * most results to keep for each query, or 0 to keep all of them
+	 */
+	private final int top;
+
+	/**
+	 * how to score the results
+	 */
+	private final Scorer scorer;
+
+	/**
+	 * searches still running, so a query repeated in the file is searched once
+	 */
+	private final SingleFlight<ArrayList<Result>> flights;
+
+	/**
+	 * whether plain queries in a file are searched together in one shared scan
+	 */
+	private final boolean batch;
+
+	/**
+	 * most queries to search ahead of the next one to write for each worker,
+	 * when results are streamed
+	 */
+	public static final int WINDOW = 4;
+
 	/**
 	 * Constructor
 	 * 
@@ -37,8 +70,53 @@ public class MultiThreadQueryParser implements QueryParserInterface {
 	 * @param queue workQueue
 	 */
 	public MultiThreadQueryParser(MultiThreadInvertedIndex index, WorkQueue queue) {
+		this(index, queue, 0);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param index invertedIndex
+	 * @param queue workQueue
+	 * @param top   most results to keep for each query, or 0 to keep all of them
+	 */
+	public MultiThreadQueryParser(MultiThreadInvertedIndex index, WorkQueue queue, int top) {
+		this(index, queue, top, Scorer.FREQUENCY);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param index  invertedIndex
+	 * @param queue  workQueue
+	 * @param top    most results to keep for each query, or 0 to keep all of
+	 *               them
+	 * @param scorer how to score the results
+	 */
+	public MultiThreadQueryParser(MultiThreadInvertedIndex index, WorkQueue queue, int top, Scorer scorer) {
+		this(index, queue, top, scorer, false);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param index  invertedIndex
+	 * @param queue  workQueue
+	 * @param top    most results to keep for each query, or 0 to keep all of
+	 *               them
+	 * @param scorer how to score the results
+	 * @param batch  whether plain queries in a file are searched together in
+	 *               one shared scan, which only works with
+	 *               {@link Scorer#FREQUENCY}
+	 */
+	public MultiThreadQueryParser(MultiThreadInvertedIndex index, WorkQueue queue, int top, Scorer scorer,
+			boolean batch) {
 		this.index = index;
 		this.queue = queue;
+		this.top = top;
+		this.scorer = scorer;
+		this.flights = new SingleFlight<ArrayList<Result>>();
+		this.batch = batch && scorer == Scorer.FREQUENCY;
 		resultMap = new TreeMap<String, ArrayList<Result>>();
 	}
 
@@ -51,8 +129,76 @@ public class MultiThreadQueryParser implements QueryParserInterface {
 	 */
 	@Override
 	public void parseQuery(Path path, boolean search) throws IOException {
-		QueryParserInterface.super.parseQuery(path, search);
+		if (!batch) {
+			QueryParserInterface.super.parseQuery(path, search);
+			queue.finish();
+			return;
+		}
+		TreeMap<String, Set<String>> plain = new TreeMap<String, Set<String>>();
+		try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (QueryParserInterface.query(line) != null) {
+					parseQuery(line, search);
+				} else {
+					Set<String> queryStems = QueryParserInterface.stems(line);
+					plain.putIfAbsent(QueryParserInterface.joined(queryStems), queryStems);
+				}
+			}
+		}
+		ArrayList<ArrayList<Result>> results = index.search(new ArrayList<Set<String>>(plain.values()), search, top,
+				queue);
 		queue.finish();
+		synchronized (resultMap) {
+			int i = 0;
+			for (String joined : plain.keySet()) {
+				resultMap.put(joined, results.get(i++));
+			}
+		}
+	}
+
+	/**
+	 * Searches a query file on the work queue and writes the results in sorted
+	 * order as they finish. The queries are searched in the order they are
+	 * written, and only a few of them ahead of the next one to write, so at most
+	 * that many results are kept at once. Waits on the work queue, so it must not
+	 * be called from one of its workers. Plain queries are not searched in a
+	 * batch.
+	 *
+	 * @param path   the query file
+	 * @param search type of search
+	 * @param output the path to write the results to
+	 * @param format how to format and compress the results file
+	 * @throws IOException if the query file cannot be read, the results cannot be
+	 *                     written, or the thread is interrupted while waiting
+	 */
+	@Override
+	public void streamQuery(Path path, boolean search, Path output, JsonFormat format) throws IOException {
+		TreeMap<String, String> queries = QueryParserInterface.queries(path);
+		Window window = new Window();
+		int ahead = Math.max(1, queue.size()) * WINDOW;
+		Iterator<Map.Entry<String, String>> lines = queries.entrySet().iterator();
+		int next = 0;
+		try (ResultsStream stream = new ResultsStream(output, format)) {
+			for (Map.Entry<String, String> entry : queries.entrySet()) {
+				while (lines.hasNext() && next < window.written + ahead) {
+					String line = lines.next().getValue();
+					int slot = next++;
+					queue.execute(() -> window.search(slot, line, search));
+				}
+				stream.write(entry.getKey(), window.take());
+			}
+		}
+	}
+
+	@Override
+	public ArrayList<Result> search(String line, boolean search) {
+		BooleanQuery query = QueryParserInterface.query(line);
+		if (query != null) {
+			return index.search(query, search, top, scorer);
+		}
+		Set<String> queryStems = QueryParserInterface.stems(line);
+		return top > 0 ? index.search(queryStems, search, top, scorer) : index.search(queryStems, search, scorer);
 	}
 
 	@Override
@@ -63,13 +209,14 @@ public class MultiThreadQueryParser implements QueryParserInterface {
 	/**
 	 * Writes the queries to the JSON
 	 * 
-	 * @param path path to be written on
+	 * @param path   path to be written on
+	 * @param format how to format and compress the file
 	 * @throws IOException input outputException
 	 */
 	@Override
-	public void queryWrite(Path path) throws IOException {
+	public void queryWrite(Path path, JsonFormat format) throws IOException {
 		synchronized (resultMap) {
-			ResultsWriter.write(resultMap, path);
+			ResultsWriter.write(resultMap, path, format);
 		}
 	}
 
@@ -102,17 +249,110 @@ public class MultiThreadQueryParser implements QueryParserInterface {
 
 		@Override
 		public void run() {
-			Set<String> queryStems = TextFileStemmer.uniqueStems(line);
-			String joined = String.join(" ", queryStems);
+			BooleanQuery query = QueryParserInterface.query(line);
+			Set<String> queryStems = query == null ? QueryParserInterface.stems(line) : null;
+			if (query != null && query.isEmpty()) {
+				return;
+			}
+			String joined = query != null ? query.toString() : QueryParserInterface.joined(queryStems);
 			synchronized (resultMap) {
 				if (resultMap.containsKey(joined)) {
 					return;
 				}
 			}
-			var local = index.search(queryStems, search);
-			synchronized (resultMap) {
-				resultMap.put(joined, local);
+			flights.run(joined, () -> {
+				ArrayList<Result> local;
+				if (query != null) {
+					local = index.search(query, search, top, scorer);
+				} else {
+					local = top > 0 ? index.search(queryStems, search, top, scorer) : index.search(queryStems, search, scorer);
+				}
+				synchronized (resultMap) {
+					resultMap.put(joined, local);
+				}
+				return local;
+			});
+		}
+	}
+
+	/**
+	 * Results of queries searched ahead of the one being written, by their
+	 * position in sorted order
+	 */
+	private class Window {
+		/**
+		 * the results of each query finished but not yet written
+		 */
+		private final HashMap<Integer, ArrayList<Result>> finished;
+
+		/**
+		 * what the first search that failed threw, if any
+		 */
+		private Throwable failure;
+
+		/**
+		 * number of results taken to be written
+		 */
+		private volatile int written;
+
+		/**
+		 * Constructor method
+		 */
+		public Window() {
+			this.finished = new HashMap<Integer, ArrayList<Result>>();
+			this.failure = null;
+			this.written = 0;
+		}
+
+		/**
+		 * Searches a query and keeps its results until they are taken.
+		 *
+		 * @param slot   the position of the query in sorted order
+		 * @param line   the query line
+		 * @param search type of search
+		 */
+		public void search(int slot, String line, boolean search) {
+			ArrayList<Result> results = null;
+			Throwable failed = null;
+			try {
+				results = MultiThreadQueryParser.this.search(line, search);
+			} catch (RuntimeException | Error e) {
+				failed = e;
+			}
+			synchronized (this) {
+				if (failed != null && failure == null) {
+					failure = failed;
+				}
+				finished.put(slot, results);
+				notifyAll();
+			}
+		}
+
+		/**
+		 * Waits for the results of the next query to write.
+		 *
+		 * @return the sorted results of the query
+		 * @throws InterruptedIOException if the thread is interrupted while
+		 *                                waiting, leaving it interrupted
+		 * @throws RuntimeException       if a search threw one
+		 * @throws Error                  if a search threw one
+		 */
+		public synchronized ArrayList<Result> take() throws InterruptedIOException {
+			while (!finished.containsKey(written) && failure == null) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting for results");
+				}
+			}
+			if (failure instanceof Error) {
+				throw (Error) failure;
+			}
+			if (failure != null) {
+				throw (RuntimeException) failure;
 			}
+			return finished.remove(written++);
 		}
 	}
-}
\ No newline at end of file
+}
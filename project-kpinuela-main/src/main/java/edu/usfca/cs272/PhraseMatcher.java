@@ -0,0 +1,135 @@
+package edu.usfca.cs272;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds where a phrase appears using the positions stored in the postings of
+ * its words. The postings are intersected first, starting from the word in the
+ * fewest documents and leapfrogging the others forward to it, and only the
+ * documents every word appears in have their positions decoded. The positions
+ * are then merged with a galloping search, driven by the word that appears the
+ * fewest times in the document.
+ *
+ * @author kyle
+ */
+public class PhraseMatcher {
+	/**
+	 * Finds every place a phrase starts.
+	 *
+	 * @param lists the postings of each word of the phrase, in order; a word
+	 *              that appears twice is listed twice
+	 * @return the documents the phrase appears in, with the position of the
+	 *         first word of each occurrence
+	 */
+	public static PostingList match(List<? extends Postings> lists) {
+		int n = lists.size();
+		PostingList matches = new PostingList();
+		if (n == 0) {
+			return matches;
+		}
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Integer.compare(lists.get(a).size(), lists.get(b).size()));
+		Postings rarest = lists.get(order[0]);
+		int[] cursors = new int[n];
+		int cursor = 0;
+		candidates: while (cursor < rarest.size()) {
+			int document = rarest.document(cursor);
+			for (int j = 1; j < n; j++) {
+				int i = order[j];
+				Postings list = lists.get(i);
+				cursors[i] = list.advance(document, cursors[i]);
+				if (cursors[i] >= list.size()) {
+					return matches;
+				}
+				int found = list.document(cursors[i]);
+				if (found > document) {
+					cursor = rarest.advance(found, cursor);
+					continue candidates;
+				}
+			}
+			cursors[order[0]] = cursor;
+			int[][] positions = new int[n][];
+			for (int i = 0; i < n; i++) {
+				positions[i] = lists.get(i).positions(cursors[i]).toIntArray();
+			}
+			match(matches, document, positions);
+			cursor++;
+		}
+		return matches;
+	}
+
+	/**
+	 * Adds every place the phrase starts in one document.
+	 *
+	 * @param matches   the postings to add to
+	 * @param document  the document every word appears in
+	 * @param positions the positions of each word of the phrase in the document
+	 */
+	private static void match(PostingList matches, int document, int[][] positions) {
+		int fewest = 0;
+		for (int i = 1; i < positions.length; i++) {
+			if (positions[i].length < positions[fewest].length) {
+				fewest = i;
+			}
+		}
+		int[] from = new int[positions.length];
+		PositionList found = null;
+		candidates: for (int position : positions[fewest]) {
+			int start = position - fewest;
+			for (int i = 0; i < positions.length; i++) {
+				if (i == fewest) {
+					continue;
+				}
+				from[i] = gallop(positions[i], from[i], start + i);
+				if (from[i] >= positions[i].length) {
+					break candidates;
+				}
+				if (positions[i][from[i]] != start + i) {
+					continue candidates;
+				}
+			}
+			if (found == null) {
+				found = matches.add(document);
+			}
+			found.add(start);
+		}
+	}
+
+	/**
+	 * Finds the first index at or after a starting index whose value is at least
+	 * the target, galloping ahead before a binary search.
+	 *
+	 * @param values sorted values
+	 * @param from   the index to start from
+	 * @param target the value to look for
+	 * @return the first index whose value is not less than the target, or the
+	 *         length if there is none
+	 */
+	private static int gallop(int[] values, int from, int target) {
+		if (from >= values.length || values[from] >= target) {
+			return from;
+		}
+		int step = 1;
+		int low = from;
+		int high = from + step;
+		while (high < values.length && values[high] < target) {
+			low = high;
+			step <<= 1;
+			high = from + step;
+		}
+		high = Math.min(high, values.length);
+		while (low + 1 < high) {
+			int middle = (low + high) >>> 1;
+			if (values[middle] < target) {
+				low = middle;
+			} else {
+				high = middle;
+			}
+		}
+		return high;
+	}
+}
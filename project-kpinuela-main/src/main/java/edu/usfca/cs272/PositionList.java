@@ -0,0 +1,409 @@
+package edu.usfca.cs272;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A sorted set of word positions for a single location. Positions are stored
+ * as variable-byte encoded deltas in a growable byte buffer instead of boxed
+ * {@link Integer} objects in a {@link java.util.TreeSet}, which brings the cost
+ * of a typical position down from around 40 bytes to one or two bytes.
+ *
+ * Positions are almost always added in increasing order, which only appends to
+ * the buffer. Adding a smaller position falls back to decoding and re-encoding
+ * the whole list.
+ *
+ * Once a list is shared with a read-only index, or with a copy of its postings
+ * handed to a reader, it must not change again, so owners check
+ * {@link #isShared()} and copy it before adding to it.
+ *
+ * Warning: This class is not thread-safe.
+ *
+ * @author kyle
+ */
+public class PositionList extends AbstractCollection<Integer> {
+	/**
+	 * Variable-byte encoded deltas between consecutive positions
+	 */
+	private byte[] bytes;
+
+	/**
+	 * Number of bytes used in the buffer
+	 */
+	private int length;
+
+	/**
+	 * Number of positions stored
+	 */
+	private int size;
+
+	/**
+	 * The last (largest) position stored
+	 */
+	private int last;
+
+	/**
+	 * Whether the list is shared with a read-only index
+	 */
+	private boolean shared;
+
+	/**
+	 * Constructor method
+	 */
+	public PositionList() {
+		this.bytes = new byte[4];
+		this.length = 0;
+		this.size = 0;
+		this.last = 0;
+		this.shared = false;
+	}
+
+	/**
+	 * Copy constructor. The copy is not shared.
+	 *
+	 * @param other the list to copy
+	 */
+	public PositionList(PositionList other) {
+		this.bytes = Arrays.copyOf(other.bytes, Math.max(other.length, 4));
+		this.length = other.length;
+		this.size = other.size;
+		this.last = other.last;
+		this.shared = false;
+	}
+
+	/**
+	 * Reads a list from encoded bytes in a buffer, as written by
+	 * {@link #writeTo(ByteBuffer)}. The buffer's position is not changed.
+	 *
+	 * @param buffer the buffer to read from
+	 * @param offset where the encoded bytes start
+	 * @param length number of encoded bytes
+	 * @param size   number of positions encoded
+	 * @return a new list with the decoded positions
+	 */
+	public static PositionList read(ByteBuffer buffer, int offset, int length, int size) {
+		PositionList list = new PositionList();
+		list.bytes = new byte[Math.max(length, 4)];
+		buffer.get(offset, list.bytes, 0, length);
+		list.length = length;
+		list.size = size;
+		int value = 0;
+		for (int i = 0, index = 0; i < size; i++) {
+			value += decode(list.bytes, index);
+			index = skip(list.bytes, index);
+		}
+		list.last = value;
+		return list;
+	}
+
+	/**
+	 * Writes the encoded positions to a buffer. Exactly
+	 * {@link #encodedLength()} bytes are written.
+	 *
+	 * @param buffer the buffer to write to
+	 */
+	public void writeTo(ByteBuffer buffer) {
+		buffer.put(bytes, 0, length);
+	}
+
+	/**
+	 * Marks the list as shared with a read-only index or a copy of its postings.
+	 */
+	public void share() {
+		shared = true;
+	}
+
+	/**
+	 * Checks whether the list is shared with a read-only index and must be copied
+	 * before it is changed.
+	 *
+	 * @return true if the list is shared
+	 */
+	public boolean isShared() {
+		return shared;
+	}
+
+	/**
+	 * Adds a position to the list if it is not already present.
+	 *
+	 * @param position the position to add
+	 * @return true if the list changed
+	 */
+	public boolean add(int position) {
+		if (size == 0 || position > last) {
+			append(position);
+			return true;
+		}
+		if (position == last || contains(position)) {
+			return false;
+		}
+		int[] values = toIntArray();
+		int index = -Arrays.binarySearch(values, position) - 1;
+		clear();
+		for (int i = 0; i < index; i++) {
+			append(values[i]);
+		}
+		append(position);
+		for (int i = index; i < values.length; i++) {
+			append(values[i]);
+		}
+		return true;
+	}
+
+	@Override
+	public boolean add(Integer position) {
+		return add(position.intValue());
+	}
+
+	/**
+	 * Merges the positions of another list into this one. When every position in
+	 * the other list comes after this one, its encoded deltas are spliced in
+	 * directly without decoding.
+	 *
+	 * @param other the list to merge in
+	 */
+	public void addAll(PositionList other) {
+		if (other.size == 0) {
+			return;
+		}
+		int first = other.first();
+		if (size == 0 || first > last) {
+			int offset = skip(other.bytes, 0);
+			append(first);
+			ensureCapacity(length + other.length - offset);
+			System.arraycopy(other.bytes, offset, bytes, length, other.length - offset);
+			length += other.length - offset;
+			size += other.size - 1;
+			last = other.last;
+			return;
+		}
+		int[] mine = toIntArray();
+		int[] theirs = other.toIntArray();
+		clear();
+		int i = 0;
+		int j = 0;
+		while (i < mine.length || j < theirs.length) {
+			if (j == theirs.length || (i < mine.length && mine[i] < theirs[j])) {
+				append(mine[i++]);
+			} else if (i == mine.length || theirs[j] < mine[i]) {
+				append(theirs[j++]);
+			} else {
+				append(mine[i++]);
+				j++;
+			}
+		}
+	}
+
+	/**
+	 * Checks whether a position is in the list. Stops decoding as soon as a
+	 * larger position is found.
+	 *
+	 * @param position the position to look for
+	 * @return true if the position is in the list
+	 */
+	public boolean contains(int position) {
+		if (size == 0 || position > last) {
+			return false;
+		}
+		int offset = 0;
+		int value = 0;
+		for (int i = 0; i < size; i++) {
+			int delta = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = bytes[offset++];
+				delta |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			value += delta;
+			if (value >= position) {
+				return value == position;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return o instanceof Integer && contains(((Integer) o).intValue());
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		length = 0;
+		size = 0;
+		last = 0;
+	}
+
+	/**
+	 * Returns the smallest position in the list.
+	 *
+	 * @return the first position
+	 * @throws NoSuchElementException if the list is empty
+	 */
+	public int first() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return decode(bytes, 0);
+	}
+
+	/**
+	 * Returns the largest position in the list.
+	 *
+	 * @return the last position
+	 * @throws NoSuchElementException if the list is empty
+	 */
+	public int last() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return last;
+	}
+
+	/**
+	 * Decodes every position into a new array in increasing order.
+	 *
+	 * @return the positions as a primitive array
+	 */
+	public int[] toIntArray() {
+		int[] values = new int[size];
+		int offset = 0;
+		int value = 0;
+		for (int i = 0; i < size; i++) {
+			int delta = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = bytes[offset++];
+				delta |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			value += delta;
+			values[i] = value;
+		}
+		return values;
+	}
+
+	/**
+	 * Returns the number of bytes used to encode the positions.
+	 *
+	 * @return the encoded length
+	 */
+	public int encodedLength() {
+		return length;
+	}
+
+	@Override
+	public Iterator<Integer> iterator() {
+		return new Iterator<Integer>() {
+			/**
+			 * number of positions returned so far
+			 */
+			private int index = 0;
+
+			/**
+			 * offset of the next encoded delta
+			 */
+			private int offset = 0;
+
+			/**
+			 * the last position returned
+			 */
+			private int value = 0;
+
+			@Override
+			public boolean hasNext() {
+				return index < size;
+			}
+
+			@Override
+			public Integer next() {
+				if (index >= size) {
+					throw new NoSuchElementException();
+				}
+				int delta = 0;
+				int shift = 0;
+				byte b;
+				do {
+					b = bytes[offset++];
+					delta |= (b & 0x7F) << shift;
+					shift += 7;
+				} while (b < 0);
+				value += delta;
+				index++;
+				return value;
+			}
+		};
+	}
+
+	/**
+	 * Appends a position that is larger than every position in the list.
+	 *
+	 * @param position the position to append
+	 */
+	private void append(int position) {
+		int delta = size == 0 ? position : position - last;
+		ensureCapacity(length + 5);
+		while ((delta & ~0x7F) != 0) {
+			bytes[length++] = (byte) ((delta & 0x7F) | 0x80);
+			delta >>>= 7;
+		}
+		bytes[length++] = (byte) delta;
+		last = position;
+		size++;
+	}
+
+	/**
+	 * Grows the buffer by half again until it holds at least the given length.
+	 *
+	 * @param capacity the number of bytes needed
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity > bytes.length) {
+			bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length + (bytes.length >> 1)));
+		}
+	}
+
+	/**
+	 * Decodes the variable-byte value starting at the offset.
+	 *
+	 * @param bytes  the encoded bytes
+	 * @param offset where the value starts
+	 * @return the decoded value
+	 */
+	private static int decode(byte[] bytes, int offset) {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = bytes[offset++];
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return value;
+	}
+
+	/**
+	 * Returns the offset just past the variable-byte value starting at the offset.
+	 *
+	 * @param bytes  the encoded bytes
+	 * @param offset where the value starts
+	 * @return the offset of the next value
+	 */
+	private static int skip(byte[] bytes, int offset) {
+		while (bytes[offset++] < 0) {
+			// skips continuation bytes
+		}
+		return offset;
+	}
+}
@@ -0,0 +1,318 @@
+package edu.usfca.cs272;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The postings for a single word: the ids of every document the word appears
+ * in, sorted in increasing order, and a {@link PositionList} of where the word
+ * appears in each one. Documents are kept in parallel arrays so lookups are a
+ * binary search over an {@code int[]}.
+ *
+ * A list handed to a reader that may keep using it after its lock is released
+ * is marked shared, and an owner that wants to change it again adds to a copy
+ * instead, the same way as with the positions.
+ *
+ * Warning: This class is not thread-safe.
+ *
+ * @author kyle
+ */
+public class PostingList implements Postings {
+	/**
+	 * Sorted document ids
+	 */
+	private int[] documents;
+
+	/**
+	 * Positions for each document id
+	 */
+	private PositionList[] positions;
+
+	/**
+	 * Number of documents
+	 */
+	private int size;
+
+	/**
+	 * Whether the list is shared with a reader
+	 */
+	private boolean shared;
+
+	/**
+	 * Constructor method
+	 */
+	public PostingList() {
+		this.documents = new int[2];
+		this.positions = new PositionList[2];
+		this.size = 0;
+		this.shared = false;
+	}
+
+	/**
+	 * Copy constructor. The copy is not shared. The positions are shared with the
+	 * original and marked as shared, so a list that adds to them later copies them
+	 * first instead of changing them under a reader of the other list.
+	 *
+	 * @param other the postings to copy
+	 */
+	public PostingList(Postings other) {
+		this.size = other.size();
+		this.documents = new int[Math.max(size, 2)];
+		this.positions = new PositionList[Math.max(size, 2)];
+		for (int i = 0; i < size; i++) {
+			documents[i] = other.document(i);
+			positions[i] = other.positions(i);
+			positions[i].share();
+		}
+		this.shared = false;
+	}
+
+	/**
+	 * Returns a list with the document ids of other postings translated through
+	 * the remap array. A {@link PostingList} is remapped in place and returned
+	 * instead of being copied.
+	 *
+	 * @param other the postings to translate
+	 * @param remap translation from the other document ids to the new ones
+	 * @return a list of the translated postings
+	 */
+	public static PostingList of(Postings other, int[] remap) {
+		if (other instanceof PostingList) {
+			PostingList list = (PostingList) other;
+			list.remap(remap);
+			return list;
+		}
+		PostingList list = new PostingList();
+		list.addAll(other, remap);
+		return list;
+	}
+
+	/**
+	 * Merges postings from several sources into a new list. The positions of a
+	 * document found in only one source are shared with it, and the positions of
+	 * a document found in several are merged into a new list, so none of the
+	 * sources are changed.
+	 *
+	 * @param lists the postings to merge
+	 * @return a list of the merged postings
+	 */
+	public static PostingList merge(List<? extends Postings> lists) {
+		PostingList merged = new PostingList();
+		int[] next = new int[lists.size()];
+		while (true) {
+			int document = -1;
+			for (int k = 0; k < next.length; k++) {
+				Postings list = lists.get(k);
+				if (next[k] < list.size() && (document < 0 || list.document(next[k]) < document)) {
+					document = list.document(next[k]);
+				}
+			}
+			if (document < 0) {
+				return merged;
+			}
+			PositionList positions = null;
+			boolean copied = false;
+			for (int k = 0; k < next.length; k++) {
+				Postings list = lists.get(k);
+				if (next[k] < list.size() && list.document(next[k]) == document) {
+					PositionList other = list.positions(next[k]++);
+					if (positions == null) {
+						positions = other;
+					} else {
+						if (!copied) {
+							positions = new PositionList(positions);
+							copied = true;
+						}
+						positions.addAll(other);
+					}
+				}
+			}
+			merged.insert(merged.size, document, positions);
+		}
+	}
+
+	/**
+	 * Returns the positions for a document that can be added to, adding the
+	 * document if it is not in the list yet. Adding to the last document or a new
+	 * larger document is the fast path used while building.
+	 *
+	 * @param document the document id
+	 * @return the positions of this word in the document
+	 */
+	public PositionList add(int document) {
+		if (size > 0 && documents[size - 1] == document) {
+			return writable(size - 1);
+		}
+		int index = size == 0 || document > documents[size - 1] ? -size - 1 : find(document);
+		if (index >= 0) {
+			return writable(index);
+		}
+		PositionList list = new PositionList();
+		insert(-index - 1, document, list);
+		return list;
+	}
+
+	/**
+	 * Merges other postings into this list. Document ids in the other postings
+	 * are first translated through the remap array, and positions of documents
+	 * found in both are merged. Positions of new documents are moved over when the
+	 * other postings are a {@link PostingList} and copied otherwise.
+	 *
+	 * @param other the postings to merge in
+	 * @param remap translation from the other document ids to this list's
+	 */
+	public void addAll(Postings other, int[] remap) {
+		boolean move = other instanceof PostingList;
+		for (int i = 0; i < other.size(); i++) {
+			int document = remap[other.document(i)];
+			int index = size == 0 || document > documents[size - 1] ? -size - 1 : find(document);
+			if (index >= 0) {
+				writable(index).addAll(other.positions(i));
+			} else if (move) {
+				insert(-index - 1, document, other.positions(i));
+			} else {
+				PositionList copy = new PositionList();
+				copy.addAll(other.positions(i));
+				insert(-index - 1, document, copy);
+			}
+		}
+	}
+
+	/**
+	 * Merges another list with document ids that already match this list's,
+	 * moving its positions over. When every document of the other list comes
+	 * after the last one in this list, which is the usual case since new
+	 * documents get larger ids, its arrays are spliced on in one copy.
+	 *
+	 * @param other the list to merge in, which should not be used afterwards
+	 */
+	public void addAll(PostingList other) {
+		if (other.size == 0) {
+			return;
+		}
+		if (size == 0 || other.documents[0] > documents[size - 1]) {
+			if (size + other.size > documents.length) {
+				int capacity = Math.max(documents.length * 2, size + other.size);
+				documents = Arrays.copyOf(documents, capacity);
+				positions = Arrays.copyOf(positions, capacity);
+			}
+			System.arraycopy(other.documents, 0, documents, size, other.size);
+			System.arraycopy(other.positions, 0, positions, size, other.size);
+			size += other.size;
+			return;
+		}
+		for (int i = 0; i < other.size; i++) {
+			int document = other.documents[i];
+			int index = document > documents[size - 1] ? -size - 1 : find(document);
+			if (index >= 0) {
+				writable(index).addAll(other.positions[i]);
+			} else {
+				insert(-index - 1, document, other.positions[i]);
+			}
+		}
+	}
+
+	/**
+	 * Translates every document id in place through the remap array, restoring
+	 * sorted order if the translation does not preserve it.
+	 *
+	 * @param remap translation from the current document ids to the new ones
+	 */
+	public void remap(int[] remap) {
+		boolean sorted = true;
+		for (int i = 0; i < size; i++) {
+			documents[i] = remap[documents[i]];
+			sorted = sorted && (i == 0 || documents[i - 1] < documents[i]);
+		}
+		if (!sorted) {
+			long[] keys = new long[size];
+			for (int i = 0; i < size; i++) {
+				keys[i] = (long) documents[i] << 32 | i;
+			}
+			Arrays.sort(keys);
+			int[] sortedDocuments = new int[documents.length];
+			PositionList[] sortedPositions = new PositionList[positions.length];
+			for (int i = 0; i < size; i++) {
+				sortedDocuments[i] = (int) (keys[i] >>> 32);
+				sortedPositions[i] = positions[(int) keys[i]];
+			}
+			documents = sortedDocuments;
+			positions = sortedPositions;
+		}
+	}
+
+	/**
+	 * Marks the list as shared with a reader, so it must not change again.
+	 */
+	public void share() {
+		shared = true;
+	}
+
+	/**
+	 * Checks whether the list is shared with a reader and must be copied before
+	 * it is changed.
+	 *
+	 * @return true if the list is shared
+	 */
+	public boolean isShared() {
+		return shared;
+	}
+
+	@Override
+	public int find(int document) {
+		return Arrays.binarySearch(documents, 0, size, document);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int document(int index) {
+		return documents[index];
+	}
+
+	@Override
+	public PositionList positions(int index) {
+		return positions[index];
+	}
+
+	@Override
+	public int frequency(int index) {
+		return positions[index].size();
+	}
+
+	/**
+	 * Returns the positions at an index, first replacing them with a copy if they
+	 * are shared with a read-only index.
+	 *
+	 * @param index the index in the list
+	 * @return positions that can be changed
+	 */
+	private PositionList writable(int index) {
+		if (positions[index].isShared()) {
+			positions[index] = new PositionList(positions[index]);
+		}
+		return positions[index];
+	}
+
+	/**
+	 * Inserts a document at an index, growing the arrays if needed.
+	 *
+	 * @param index    where to insert
+	 * @param document the document id
+	 * @param list     the positions of the document
+	 */
+	private void insert(int index, int document, PositionList list) {
+		if (size == documents.length) {
+			documents = Arrays.copyOf(documents, size * 2);
+			positions = Arrays.copyOf(positions, size * 2);
+		}
+		System.arraycopy(documents, index, documents, index + 1, size - index);
+		System.arraycopy(positions, index, positions, index + 1, size - index);
+		documents[index] = document;
+		positions[index] = list;
+		size++;
+	}
+}
@@ -0,0 +1,145 @@
+package edu.usfca.cs272;
+
+import java.util.Arrays;
+
+/**
+ * Read access to the postings of a single word: the ids of the documents the
+ * word appears in, sorted in increasing order, along with how many times and
+ * where it appears in each one.
+ *
+ * @author kyle
+ */
+public interface Postings {
+	/**
+	 * Returns the number of documents.
+	 *
+	 * @return number of documents
+	 */
+	public int size();
+
+	/**
+	 * Returns the document id at an index.
+	 *
+	 * @param index the index in the postings
+	 * @return the document id
+	 */
+	public int document(int index);
+
+	/**
+	 * Returns the number of positions at an index.
+	 *
+	 * @param index the index in the postings
+	 * @return the number of times the word appears in the document
+	 */
+	public int frequency(int index);
+
+	/**
+	 * Returns the positions at an index.
+	 *
+	 * @param index the index in the postings
+	 * @return the positions
+	 */
+	public PositionList positions(int index);
+
+	/**
+	 * Finds the index of a document with a binary search.
+	 *
+	 * @param document the document id
+	 * @return the index of the document, or {@code (-(insertion point) - 1)} if
+	 *         it is not in the postings
+	 */
+	public default int find(int document) {
+		int low = 0;
+		int high = size() - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int value = document(middle);
+			if (value < document) {
+				low = middle + 1;
+			} else if (value > document) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * Finds the first index at or after a starting index whose document is at
+	 * least the given one, galloping ahead before a binary search so that moving
+	 * a short distance stays cheap.
+	 *
+	 * @param document the document id
+	 * @param from     the index to start from
+	 * @return the first index whose document is not less than the given one, or
+	 *         {@link #size()} if there is none
+	 */
+	public default int advance(int document, int from) {
+		int size = size();
+		if (from >= size || document(from) >= document) {
+			return from;
+		}
+		int step = 1;
+		int low = from;
+		int high = from + step;
+		while (high < size && document(high) < document) {
+			low = high;
+			step <<= 1;
+			high = from + step;
+		}
+		high = Math.min(high, size);
+		while (low + 1 < high) {
+			int middle = (low + high) >>> 1;
+			if (document(middle) < document) {
+				low = middle;
+			} else {
+				high = middle;
+			}
+		}
+		return high;
+	}
+
+	/**
+	 * Returns the highest score any single document gets from these postings:
+	 * the largest frequency divided by that document's word count.
+	 *
+	 * @param documents the document table the postings refer to
+	 * @return the upper bound on the score of one document
+	 */
+	public default double bound(DocumentTable documents) {
+		double bound = 0;
+		for (int i = 0; i < size(); i++) {
+			bound = Math.max(bound, (double) frequency(i) / documents.count(document(i)));
+		}
+		return bound;
+	}
+
+	/**
+	 * Returns the indices of the postings ordered by the rank of their document.
+	 *
+	 * @param ranks rank of every document id
+	 * @return the indices in rank order
+	 * @see DocumentTable#ranks()
+	 */
+	public default int[] order(int[] ranks) {
+		int size = size();
+		int[] order = new int[size];
+		boolean sorted = true;
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+			sorted = sorted && (i == 0 || ranks[document(i - 1)] < ranks[document(i)]);
+		}
+		if (!sorted) {
+			long[] keys = new long[size];
+			for (int i = 0; i < size; i++) {
+				keys[i] = (long) ranks[document(i)] << 32 | i;
+			}
+			Arrays.sort(keys);
+			for (int i = 0; i < size; i++) {
+				order[i] = (int) keys[i];
+			}
+		}
+		return order;
+	}
+}
@@ -24,15 +24,51 @@ public class QueryParser implements QueryParserInterface {
 	 */
 	private final InvertedIndex index;
 
+	/**
+	 * most results to keep for each query, or 0 to keep all of them
+	 */
+	private final int top;
+
+	/**
+	 * how to score the results
+	 */
+	private final Scorer scorer;
+
 	/**
 	 * constructor method
 	 * 
 	 * @param index the inverted index constructor method
 	 */
 	public QueryParser(InvertedIndex index) {
+		this(index, 0);
+	}
+
+	/**
+	 * constructor method
+	 * 
+	 * @param index the inverted index constructor method
+	 * @param top   most results to keep for each query, or 0 to keep all of
+	 *              them
+	 */
+	public QueryParser(InvertedIndex index, int top) {
+		this(index, top, Scorer.FREQUENCY);
+	}
+
+	/**
+	 * constructor method
+	 * 
+	 * @param index  the inverted index constructor method
+	 * @param top    most results to keep for each query, or 0 to keep all of
+	 *               them
+	 * @param scorer how to score the results
+	 */
+	public QueryParser(InvertedIndex index, int top, Scorer scorer) {
 		resultMap = new TreeMap<>();
 		this.index = index;
+		this.top = top;
+		this.scorer = scorer;
 	}
+
 	/**
 	 * parses the line from a buffered reader and puts
 	 * 
@@ -41,23 +77,42 @@ public class QueryParser implements QueryParserInterface {
 	 */
 	@Override
 	public void parseQuery(String line, boolean search) {
-		Set<String> queryStems = TextFileStemmer.uniqueStems(line);
+		BooleanQuery query = QueryParserInterface.query(line);
+		if (query != null) {
+			String joined = query.toString();
+			if (!query.isEmpty() && !resultMap.containsKey(joined)) {
+				resultMap.put(joined, index.search(query, search, top, scorer));
+			}
+			return;
+		}
+		Set<String> queryStems = QueryParserInterface.stems(line);
 		if (!queryStems.isEmpty()) {
-			String joined = String.join(" ", queryStems);
+			String joined = QueryParserInterface.joined(queryStems);
 			if (!resultMap.containsKey(joined)) {
-				resultMap.put(joined, index.search(queryStems, search));
+				resultMap.put(joined, top > 0 ? index.search(queryStems, search, top, scorer) : index.search(queryStems, search, scorer));
 			}
 		}
 	}
 
+	@Override
+	public ArrayList<Result> search(String line, boolean search) {
+		BooleanQuery query = QueryParserInterface.query(line);
+		if (query != null) {
+			return index.search(query, search, top, scorer);
+		}
+		Set<String> queryStems = QueryParserInterface.stems(line);
+		return top > 0 ? index.search(queryStems, search, top, scorer) : index.search(queryStems, search, scorer);
+	}
+
 	/**
 	 * Writes the queries to the JSON
 	 * 
-	 * @param path path to be written on
+	 * @param path   path to be written on
+	 * @param format how to format and compress the file
 	 * @throws IOException input outputException
 	 */
 	@Override
-	public void queryWrite(Path path) throws IOException {
-		ResultsWriter.write(resultMap, path);
+	public void queryWrite(Path path, JsonFormat format) throws IOException {
+		ResultsWriter.write(resultMap, path, format);
 	}
 }
@@ -1,10 +1,23 @@
 package edu.usfca.cs272;
 
+import static opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM.ENGLISH;
+
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import edu.usfca.cs272.InvertedIndex.Result;
+
+import opennlp.tools.stemmer.Stemmer;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 /**
  * @author kyle An Interface for the Single Threaded and Multithreaded Query
@@ -37,12 +50,128 @@ public interface QueryParserInterface {
 	 */
 	public void parseQuery(String line, boolean search);
 
+	/**
+	 * Searches a query file and writes the results as it goes, in sorted order,
+	 * instead of keeping every result until the end. Only the queries themselves
+	 * are read in first, to sort them, so memory does not grow with the results
+	 * of the whole file. The file comes out the same as
+	 * {@link #queryWrite(Path, JsonFormat)}.
+	 *
+	 * @param path   the query file
+	 * @param search type of search
+	 * @param output the path to write the results to
+	 * @param format how to format and compress the results file
+	 * @throws IOException if the query file cannot be read or the results cannot
+	 *                     be written
+	 */
+	public default void streamQuery(Path path, boolean search, Path output, JsonFormat format)
+			throws IOException {
+		try (ResultsStream stream = new ResultsStream(output, format)) {
+			for (Map.Entry<String, String> entry : queries(path).entrySet()) {
+				stream.write(entry.getKey(), search(entry.getValue(), search));
+			}
+		}
+	}
+
+	/**
+	 * Searches one query line without keeping the results.
+	 *
+	 * @param line   the query line
+	 * @param search type of search
+	 * @return array list of Results, sorted
+	 */
+	public ArrayList<Result> search(String line, boolean search);
+
 	/**
 	 * writes the query to the JSOn
 	 * 
 	 * @param path to be written on to
 	 * @throws IOException input Output Exception
 	 */
-	public void queryWrite(Path path) throws IOException;
+	public default void queryWrite(Path path) throws IOException {
+		queryWrite(path, JsonFormat.PRETTY);
+	}
+
+	/**
+	 * writes the query to the JSON in the given format
+	 * 
+	 * @param path   to be written on to
+	 * @param format how to format and compress the file
+	 * @throws IOException input Output Exception
+	 */
+	public void queryWrite(Path path, JsonFormat format) throws IOException;
+
+	/**
+	 * Parses a query line into unique, sorted stems. Words in double quotes are
+	 * kept together as a phrase, which is stored as the stems of its words joined
+	 * by single spaces. A quote without a closing quote is ignored.
+	 * 
+	 * @param line the query line
+	 * @return a sorted set of stems and phrases
+	 */
+	public static Set<String> stems(String line) {
+		Stemmer stemmer = new SnowballStemmer(ENGLISH);
+		TreeSet<String> stems = new TreeSet<String>();
+		String[] parts = line.split("\"", -1);
+		for (int i = 0; i < parts.length; i++) {
+			if (i % 2 == 1 && i < parts.length - 1) {
+				ArrayList<String> words = new ArrayList<String>();
+				TextFileStemmer.stemLine(parts[i], stemmer, words);
+				if (!words.isEmpty()) {
+					stems.add(String.join(" ", words));
+				}
+			} else {
+				TextFileStemmer.stemLine(parts[i], stemmer, stems);
+			}
+		}
+		return stems;
+	}
+
+	/**
+	 * Joins the stems of a query the way it is written in the results, with
+	 * phrases back in quotes.
+	 * 
+	 * @param stems the stems returned by {@link #stems(String)}
+	 * @return the stems joined by spaces
+	 */
+	public static String joined(Set<String> stems) {
+		StringJoiner joiner = new StringJoiner(" ");
+		for (String stem : stems) {
+			joiner.add(stem.indexOf(' ') >= 0 ? "\"" + stem + "\"" : stem);
+		}
+		return joiner.toString();
+	}
 
+	/**
+	 * Reads the queries of a file that have results to write, sorted the way
+	 * they are written, keeping the first line of each query.
+	 *
+	 * @param path the query file
+	 * @return sorted map from each query to the line it was first read from
+	 * @throws IOException if the query file cannot be read
+	 */
+	public static TreeMap<String, String> queries(Path path) throws IOException {
+		TreeMap<String, String> queries = new TreeMap<String, String>();
+		try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				BooleanQuery query = query(line);
+				String joined = query != null ? query.toString() : joined(stems(line));
+				if (!joined.isEmpty() && (query == null || !query.isEmpty())) {
+					queries.putIfAbsent(joined, line);
+				}
+			}
+		}
+		return queries;
+	}
+
+	/**
+	 * Parses a query line that uses boolean operators.
+	 * 
+	 * @param line the query line
+	 * @return the parsed query, or null if the line is a plain query
+	 */
+	public static BooleanQuery query(String line) {
+		return BooleanQuery.isBoolean(line) ? BooleanQuery.parse(line) : null;
+	}
 }
@@ -0,0 +1,444 @@
+package edu.usfca.cs272;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import edu.usfca.cs272.InvertedIndex.Result;
+
+/**
+ * Plans how to search a plain query before reading any postings. Each stem is
+ * first estimated from the index's word list alone, counting the words a
+ * prefix expands to and the postings they add up to, and the stems are then
+ * looked up and added up from the cheapest to the most expensive. The plan
+ * picks the {@link Strategy} with the lowest estimated cost from the number of
+ * lists, the postings in them and the number of documents in the index.
+ *
+ * Every way gives the same results, and the lists are always added up in the
+ * planned order, so scores round the same whichever is picked. A plan can be
+ * printed to see what a query looks up and why it was evaluated the way it
+ * was.
+ *
+ * @author kyle
+ */
+public class QueryPlanner {
+	/**
+	 * The ways a set of lists can be evaluated
+	 */
+	public enum Strategy {
+		/** Skips documents that cannot make the best k, for the best k of a few lists. */
+		PRUNE,
+
+		/** Scores every document and keeps the best k in a bounded heap. */
+		HEAP,
+
+		/** Merges the sorted lists one document at a time, for every result. */
+		MERGE,
+
+		/** Adds up each list into a hash table of documents, for every result. */
+		HASH;
+
+		@Override
+		public String toString() {
+			return name().toLowerCase();
+		}
+	}
+
+	/**
+	 * Cost of adding one posting into a table of documents, relative to checking
+	 * the head of one sorted list for one document. Merging checks every list for
+	 * each document found, so past about this many lists hashing is cheaper.
+	 */
+	public static final int HASH_COST = 8;
+
+	/**
+	 * Looks up a query and plans how to search it. Every stem is estimated from
+	 * the word list first, and no postings are read until the plan is run.
+	 *
+	 * @param index      the index to search
+	 * @param queryStems stems
+	 * @param exact      type of search
+	 * @param k          the most results to return, or 0 to return all of them
+	 * @param scorer     how to score the results
+	 * @return the plan
+	 */
+	public static Plan plan(InvertedIndex index, Set<String> queryStems, boolean exact, int k, Scorer scorer) {
+		ArrayList<Step> steps = new ArrayList<Step>(queryStems.size());
+		for (String stem : queryStems) {
+			steps.add(estimate(index, stem, exact));
+		}
+		Collections.sort(steps, (a, b) -> Long.compare(a.postings, b.postings));
+		return new Plan(index, steps, exact, k, scorer);
+	}
+
+	/**
+	 * Estimates what a stem looks up without reading its postings. A phrase is
+	 * estimated as the postings of its rarest word, the most places the whole
+	 * phrase can appear.
+	 *
+	 * @param index the index to search
+	 * @param stem  the stem or phrase
+	 * @param exact type of search
+	 * @return the estimated step
+	 */
+	private static Step estimate(InvertedIndex index, String stem, boolean exact) {
+		if (stem.indexOf(' ') < 0) {
+			Estimate estimate = new Estimate();
+			index.estimate(stem, exact, estimate);
+			return new Step(stem, exact ? "word" : "prefix", estimate.words, estimate.postings);
+		}
+		long postings = Long.MAX_VALUE;
+		for (String word : stem.split(" ")) {
+			Estimate estimate = new Estimate();
+			index.estimate(word, true, estimate);
+			postings = Math.min(postings, estimate.postings);
+		}
+		return new Step(stem, "phrase", postings > 0 ? 1 : 0, postings);
+	}
+
+	/**
+	 * Picks how to evaluate a set of lists that are already looked up.
+	 *
+	 * @param lists     the postings of every matching word
+	 * @param k         the most results to return, or 0 to return all of them
+	 * @param documents the number of documents in the index
+	 * @return the cheapest strategy
+	 */
+	public static Strategy strategy(List<? extends Postings> lists, int k, int documents) {
+		long postings = 0;
+		for (Postings list : lists) {
+			postings += list.size();
+		}
+		return strategy(lists.size(), postings, k, documents);
+	}
+
+	/**
+	 * Picks the way to evaluate a set of lists with the lowest estimated cost.
+	 * Merging checks the head of every list for each document found, and hashing
+	 * adds each posting into a table, so merging wins for a few lists and for
+	 * long lists that find most of the documents anyway. For the best k, pruning
+	 * is costed as merging, since that is what it does when nothing can be
+	 * skipped, and the heap as hashing plus keeping the best k.
+	 *
+	 * @param lists     the number of lists
+	 * @param postings  the number of postings in them
+	 * @param k         the most results to return, or 0 to return all of them
+	 * @param documents the number of documents in the index
+	 * @return the cheapest strategy
+	 */
+	public static Strategy strategy(int lists, long postings, int k, int documents) {
+		long found = Math.min(postings, documents);
+		long merge = mergeCost(lists, postings, documents);
+		long hash = hashCost(postings, documents);
+		if (k > 0) {
+			if (lists > MaxScoreEvaluator.LISTS) {
+				return Strategy.HEAP;
+			}
+			long heap = hash + found * (32 - Integer.numberOfLeadingZeros(k));
+			return merge <= heap ? Strategy.PRUNE : Strategy.HEAP;
+		}
+		return merge <= hash ? Strategy.MERGE : Strategy.HASH;
+	}
+
+	/**
+	 * Estimates the cost of merging sorted lists.
+	 *
+	 * @param lists     the number of lists
+	 * @param postings  the number of postings in them
+	 * @param documents the number of documents in the index
+	 * @return the estimated cost
+	 */
+	private static long mergeCost(int lists, long postings, int documents) {
+		return Math.min(postings, documents) * lists + postings;
+	}
+
+	/**
+	 * Estimates the cost of adding lists up in a table of documents.
+	 *
+	 * @param postings  the number of postings
+	 * @param documents the number of documents in the index
+	 * @return the estimated cost
+	 */
+	private static long hashCost(long postings, int documents) {
+		return HASH_COST * postings + Math.min(postings, documents);
+	}
+
+	/**
+	 * Evaluates a set of lists the way a plan picked.
+	 *
+	 * @param index    the index the lists are from
+	 * @param lists    the postings of every matching word
+	 * @param k        the most results to return, or 0 to return all of them
+	 * @param scorer   how to score the results
+	 * @param strategy how to evaluate the lists
+	 * @return array list of Results, sorted
+	 */
+	public static ArrayList<Result> evaluate(InvertedIndex index, List<? extends Postings> lists, int k, Scorer scorer,
+			Strategy strategy) {
+		if (strategy == Strategy.PRUNE) {
+			return MaxScoreEvaluator.search(lists, index.documents(), k, scorer);
+		}
+		if (strategy != Strategy.MERGE && k > 0) {
+			return index.accumulate(lists, scorer).top(k);
+		}
+		ArrayList<Result> results = strategy == Strategy.MERGE ? merge(index.documents(), lists, scorer)
+				: index.matches(lists, scorer);
+		if (k > 0) {
+			return InvertedIndex.top(results, k);
+		}
+		Collections.sort(results);
+		return results;
+	}
+
+	/**
+	 * Adds up a few sorted lists one document at a time, adding each document's
+	 * lists in their original order.
+	 *
+	 * @param documents the document table the lists refer to
+	 * @param lists     the postings of every matching word
+	 * @param scorer    how to score the results
+	 * @return array list of Results in order of document id
+	 */
+	private static ArrayList<Result> merge(DocumentTable documents, List<? extends Postings> lists, Scorer scorer) {
+		int n = lists.size();
+		Postings[] postings = new Postings[n];
+		Scorer.Term[] terms = new Scorer.Term[n];
+		int[] cursors = new int[n];
+		int total = 0;
+		for (int i = 0; i < n; i++) {
+			postings[i] = lists.get(i);
+			terms[i] = scorer.term(postings[i].size(), documents);
+			total = Math.max(total, postings[i].size());
+		}
+		ArrayList<Result> results = new ArrayList<Result>(total);
+		while (true) {
+			int document = BooleanEvaluator.NONE;
+			for (int i = 0; i < n; i++) {
+				if (cursors[i] < postings[i].size()) {
+					document = Math.min(document, postings[i].document(cursors[i]));
+				}
+			}
+			if (document == BooleanEvaluator.NONE) {
+				return results;
+			}
+			int length = documents.count(document);
+			int count = 0;
+			double score = 0;
+			for (int i = 0; i < n; i++) {
+				if (cursors[i] < postings[i].size() && postings[i].document(cursors[i]) == document) {
+					int frequency = postings[i].frequency(cursors[i]);
+					count += frequency;
+					score = terms[i].score(score, count, frequency, length);
+					cursors[i]++;
+				}
+			}
+			results.add(new Result(documents, document, count, score));
+		}
+	}
+
+	/**
+	 * The number of words a stem matches and the postings in them, counted
+	 * without reading the postings
+	 */
+	public static class Estimate {
+		/**
+		 * number of matching words
+		 */
+		private int words;
+
+		/**
+		 * number of postings in those words
+		 */
+		private long postings;
+
+		/**
+		 * Counts one more matching word.
+		 *
+		 * @param postings the number of documents the word appears in
+		 */
+		public void add(long postings) {
+			add(1, postings);
+		}
+
+		/**
+		 * Counts more matching words.
+		 *
+		 * @param words    the number of words
+		 * @param postings the number of postings in them
+		 */
+		public void add(int words, long postings) {
+			this.words += words;
+			this.postings += postings;
+		}
+	}
+
+	/**
+	 * What one stem of a query looks up
+	 */
+	private static class Step {
+		/**
+		 * the stem or phrase
+		 */
+		private final String stem;
+
+		/**
+		 * word, prefix or phrase
+		 */
+		private final String kind;
+
+		/**
+		 * estimated number of lists the stem matches
+		 */
+		private final int words;
+
+		/**
+		 * estimated number of postings in those lists
+		 */
+		private final long postings;
+
+		/**
+		 * Constructor method
+		 *
+		 * @param stem     the stem or phrase
+		 * @param kind     word, prefix or phrase
+		 * @param words    estimated number of lists the stem matches
+		 * @param postings estimated number of postings in those lists
+		 */
+		public Step(String stem, String kind, int words, long postings) {
+			this.stem = stem;
+			this.kind = kind;
+			this.words = words;
+			this.postings = postings;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s %s: %d %s, %d postings", kind, stem, words, words == 1 ? "list" : "lists",
+					postings);
+		}
+	}
+
+	/**
+	 * The lists a query looks up and how they will be evaluated
+	 */
+	public static class Plan {
+		/**
+		 * the index to search
+		 */
+		private final InvertedIndex index;
+
+		/**
+		 * what each stem looks up, from the fewest postings to the most, which is
+		 * the order they are looked up and added up in
+		 */
+		private final ArrayList<Step> steps;
+
+		/**
+		 * type of search
+		 */
+		private final boolean exact;
+
+		/**
+		 * the most results to return, or 0 to return all of them
+		 */
+		private final int k;
+
+		/**
+		 * how to score the results
+		 */
+		private final Scorer scorer;
+
+		/**
+		 * estimated number of lists
+		 */
+		private final int lists;
+
+		/**
+		 * estimated number of postings in the lists
+		 */
+		private final long postings;
+
+		/**
+		 * how the lists are evaluated
+		 */
+		private final Strategy strategy;
+
+		/**
+		 * Constructor method
+		 *
+		 * @param index  the index to search
+		 * @param steps  what each stem looks up, in the order to run them
+		 * @param exact  type of search
+		 * @param k      the most results to return, or 0 to return all of them
+		 * @param scorer how to score the results
+		 */
+		private Plan(InvertedIndex index, ArrayList<Step> steps, boolean exact, int k, Scorer scorer) {
+			this.index = index;
+			this.steps = steps;
+			this.exact = exact;
+			this.k = k;
+			this.scorer = scorer;
+			int lists = 0;
+			long postings = 0;
+			for (Step step : steps) {
+				lists += step.words;
+				postings += step.postings;
+			}
+			this.lists = lists;
+			this.postings = postings;
+			this.strategy = strategy(lists, postings, k, index.documents().size());
+		}
+
+		/**
+		 * Returns how the lists are evaluated.
+		 *
+		 * @return the strategy picked
+		 */
+		public Strategy getStrategy() {
+			return strategy;
+		}
+
+		/**
+		 * Runs the search, looking up the stems and adding up their lists in the
+		 * planned order.
+		 *
+		 * @return array list of Results, sorted
+		 */
+		public ArrayList<Result> execute() {
+			if (postings == 0) {
+				return new ArrayList<Result>();
+			}
+			ArrayList<Postings> found = new ArrayList<Postings>(lists);
+			for (Step step : steps) {
+				if (step.postings > 0) {
+					found.addAll(index.lists(Collections.singleton(step.stem), exact));
+				}
+			}
+			if (found.isEmpty()) {
+				return new ArrayList<Result>();
+			}
+			return evaluate(index, found, k, scorer, strategy);
+		}
+
+		/**
+		 * Explains the plan: the strategy and the estimated costs it was picked
+		 * by, then what each stem looks up in the order they are run.
+		 */
+		@Override
+		public String toString() {
+			int documents = index.documents().size();
+			String noun = lists == 1 ? "list" : "lists";
+			StringBuilder builder = new StringBuilder();
+			builder.append(strategy).append(": ");
+			builder.append(k > 0 ? String.format("best %d of %d %s", k, lists, noun)
+					: String.format("every result of %d %s", lists, noun));
+			builder.append(String.format(", %d postings, merge cost %d, hash cost %d%n", postings,
+					mergeCost(lists, postings, documents), hashCost(postings, documents)));
+			for (Step step : steps) {
+				builder.append("  ").append(step).append(System.lineSeparator());
+			}
+			return builder.toString();
+		}
+	}
+}
@@ -0,0 +1,207 @@
+package edu.usfca.cs272;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import edu.usfca.cs272.InvertedIndex.Result;
+
+/**
+ * Keeps the results of recent searches so a repeated query does not search the
+ * index again. Entries are kept in the order they were last used and the least
+ * recently used ones are dropped once their estimated size goes over a budget
+ * in bytes.
+ *
+ * Every entry belongs to the generation of the index it was searched on. Once a
+ * newer generation is seen every older entry is dropped, and results from an
+ * older generation are never stored, so a search never sees results from
+ * before the index last changed.
+ *
+ * @author kyle
+ */
+public class ResultCache {
+	/**
+	 * estimated bytes of an entry not counting its key or results
+	 */
+	private static final int ENTRY = 96;
+
+	/**
+	 * estimated bytes of each result in an entry
+	 */
+	private static final int RESULT = 48;
+
+	/**
+	 * results by query, from least to most recently used
+	 */
+	private final LinkedHashMap<String, ArrayList<Result>> entries;
+
+	/**
+	 * most bytes the entries can take up
+	 */
+	private final long budget;
+
+	/**
+	 * estimated bytes the entries take up
+	 */
+	private long bytes;
+
+	/**
+	 * generation of the index the entries were searched on
+	 */
+	private long generation;
+
+	/**
+	 * number of searches answered from the cache
+	 */
+	private long hits;
+
+	/**
+	 * number of searches not found in the cache
+	 */
+	private long misses;
+
+	/**
+	 * number of entries dropped to stay under the budget
+	 */
+	private long evictions;
+
+	/**
+	 * Creates an empty cache.
+	 *
+	 * @param budget most bytes the cached results can take up
+	 */
+	public ResultCache(long budget) {
+		this.entries = new LinkedHashMap<String, ArrayList<Result>>(16, 0.75f, true);
+		this.budget = budget;
+		this.bytes = 0;
+		this.generation = 0;
+		this.hits = 0;
+		this.misses = 0;
+		this.evictions = 0;
+	}
+
+	/**
+	 * Returns the cached results of a query. The results are shared with other
+	 * searches and must not be changed.
+	 *
+	 * @param key        the query, written the same way every time it is asked
+	 * @param generation generation of the index being searched
+	 * @return the results, or null if they are not cached for this generation
+	 */
+	public synchronized ArrayList<Result> get(String key, long generation) {
+		invalidate(generation);
+		ArrayList<Result> results = generation == this.generation ? entries.get(key) : null;
+		if (results == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return results;
+	}
+
+	/**
+	 * Caches the results of a query, dropping the least recently used entries if
+	 * it goes over the budget. Results from an older generation of the index are
+	 * not cached.
+	 *
+	 * @param key        the query, written the same way every time it is asked
+	 * @param generation generation of the index that was searched
+	 * @param results    the results, which must not be changed after this
+	 */
+	public synchronized void put(String key, long generation, ArrayList<Result> results) {
+		invalidate(generation);
+		long size = size(key, results);
+		if (generation != this.generation || size > budget) {
+			return;
+		}
+		ArrayList<Result> old = entries.put(key, results);
+		if (old != null) {
+			bytes -= size(key, old);
+		}
+		bytes += size;
+		Iterator<Map.Entry<String, ArrayList<Result>>> iterator = entries.entrySet().iterator();
+		while (bytes > budget) {
+			Map.Entry<String, ArrayList<Result>> eldest = iterator.next();
+			bytes -= size(eldest.getKey(), eldest.getValue());
+			iterator.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * Drops every entry if a newer generation of the index is seen.
+	 *
+	 * @param generation generation of the index being searched
+	 */
+	private void invalidate(long generation) {
+		if (generation > this.generation) {
+			entries.clear();
+			bytes = 0;
+			this.generation = generation;
+		}
+	}
+
+	/**
+	 * Estimates the bytes an entry takes up. Locations are shared with the
+	 * document table, so only the key and the results themselves are counted.
+	 *
+	 * @param key     the query
+	 * @param results the results
+	 * @return the estimated size in bytes
+	 */
+	private static long size(String key, ArrayList<Result> results) {
+		return ENTRY + 2L * key.length() + (long) RESULT * results.size();
+	}
+
+	/**
+	 * Returns the number of searches answered from the cache.
+	 *
+	 * @return the number of hits
+	 */
+	public synchronized long hits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of searches not found in the cache.
+	 *
+	 * @return the number of misses
+	 */
+	public synchronized long misses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the number of entries dropped to stay under the budget.
+	 *
+	 * @return the number of evictions
+	 */
+	public synchronized long evictions() {
+		return evictions;
+	}
+
+	/**
+	 * Returns the estimated bytes the cached results take up.
+	 *
+	 * @return the estimated size in bytes
+	 */
+	public synchronized long bytes() {
+		return bytes;
+	}
+
+	/**
+	 * Returns the number of cached queries.
+	 *
+	 * @return the number of entries
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%d entries, %d bytes, %d hits, %d misses, %d evictions", entries.size(), bytes, hits,
+				misses, evictions);
+	}
+}
@@ -0,0 +1,93 @@
+package edu.usfca.cs272;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import edu.usfca.cs272.InvertedIndex.Result;
+
+/**
+ * Writes search results to a file one query at a time, so the results of a
+ * query can be thrown away as soon as they are written. The file comes out the
+ * same as {@link ResultsWriter#write(java.util.TreeMap, Path, JsonFormat)} as
+ * long as the queries are written in sorted order.
+ *
+ * @author kyle
+ */
+public class ResultsStream implements Closeable {
+	/**
+	 * the writer to the results file
+	 */
+	private final JsonChannelWriter writer;
+
+	/**
+	 * whether a query has been written yet
+	 */
+	private boolean started;
+
+	/**
+	 * the last query written
+	 */
+	private String last;
+
+	/**
+	 * Opens the results file and starts the JSON object.
+	 *
+	 * @param path   the path to write to
+	 * @param format how to format and compress the file
+	 * @throws IOException if the file cannot be written
+	 */
+	public ResultsStream(Path path, JsonFormat format) throws IOException {
+		this.writer = format.open(path);
+		this.started = false;
+		this.last = null;
+		writer.write("{");
+	}
+
+	/**
+	 * Writes the results of the next query. An empty query is skipped, the same
+	 * as in {@link ResultsWriter}.
+	 *
+	 * @param query   the query, which must come after the last one written
+	 * @param results the sorted results of the query
+	 * @throws IOException              if the file cannot be written
+	 * @throws IllegalArgumentException if the query is out of order
+	 */
+	public void write(String query, ArrayList<Result> results) throws IOException {
+		if (last != null && query.compareTo(last) <= 0) {
+			throw new IllegalArgumentException("Query " + query + " is out of order after " + last);
+		}
+		last = query;
+		if (query.isEmpty()) {
+			return;
+		}
+		if (started) {
+			writer.write(",");
+		}
+		started = true;
+		writer.write("\n");
+		ResultsWriter.writeQuote(query, writer, 1);
+		writer.write(": ");
+		writer.write("[");
+		ResultsWriter.writeValues(results, writer, 0);
+		writer.write("\n");
+		ResultsWriter.writeIndent(writer, 1);
+		writer.write("]");
+	}
+
+	/**
+	 * Ends the JSON object and closes the file.
+	 *
+	 * @throws IOException if the file cannot be written
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			writer.write("\n");
+			writer.write("}");
+		} finally {
+			writer.close();
+		}
+	}
+}
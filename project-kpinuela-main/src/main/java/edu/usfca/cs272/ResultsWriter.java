@@ -1,10 +1,7 @@
 package edu.usfca.cs272;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.Writer;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -105,12 +102,12 @@ public class ResultsWriter extends SimpleJsonWriter {
 		writer.write("\n");
 		writeQuote("count", writer, indent + 2);
 		writer.write(": ");
-		writeIndent(Integer.toString(result.getCount()), writer, 0);
+		writeInt(result.getCount(), writer);
 		writer.write(',');
 		writer.write('\n');
 		writeQuote("score", writer, indent + 2);
 		writer.write(": ");
-		writer.write((result.getScore(result.getLocation())));
+		writeScore(result.getScore(), writer);
 		writer.write(',');
 		writer.write('\n');
 		writeQuote("where", writer, indent + 2);
@@ -129,7 +126,20 @@ public class ResultsWriter extends SimpleJsonWriter {
 	 * @throws NullPointerException if map is Empty
 	 */
 	public static void write(TreeMap<String, ArrayList<Result>> resultMap, Path path) throws IOException {
-		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+		write(resultMap, path, JsonFormat.PRETTY);
+	}
+
+	/**
+	 * writes to the the given path in the given format
+	 * 
+	 * @param resultMap Map of results and stems
+	 * @param path      path to be written to
+	 * @param format    how to format and compress the file
+	 * @throws IOException input outputException
+	 */
+	public static void write(TreeMap<String, ArrayList<Result>> resultMap, Path path, JsonFormat format)
+			throws IOException {
+		try (JsonChannelWriter writer = format.open(path)) {
 			writeResult(resultMap, writer, 0);
 		}
 	}
@@ -0,0 +1,392 @@
+package edu.usfca.cs272;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+
+import edu.usfca.cs272.InvertedIndex.Result;
+
+/**
+ * Adds up the counts and scores of a search by document id in primitive
+ * arrays, instead of a map of boxed ids to {@link Result} objects. When most
+ * documents may be found the arrays are indexed by document id directly, and
+ * otherwise they are an open addressing hash table sized to the postings.
+ * Results are only created at the end, and only for the best k when that is
+ * all that is wanted.
+ *
+ * @author kyle
+ */
+public class ScoreAccumulator {
+	/**
+	 * the document table the ids refer to
+	 */
+	private final DocumentTable documents;
+
+	/**
+	 * document id plus one in each slot, or 0 if the slot is empty
+	 */
+	private int[] keys;
+
+	/**
+	 * times the query words appear in the document in each slot
+	 */
+	private int[] counts;
+
+	/**
+	 * score of the document in each slot
+	 */
+	private double[] scores;
+
+	/**
+	 * number of documents found
+	 */
+	private int size;
+
+	/**
+	 * whether each document has its own slot
+	 */
+	private final boolean dense;
+
+	/**
+	 * number of ranges of document ids to split a search into for each thread,
+	 * so a thread that gets the busy ranges does not hold up the rest
+	 */
+	private static final int RANGES = 2;
+
+	/**
+	 * Creates an empty accumulator.
+	 *
+	 * @param documents the document table the ids refer to
+	 * @param expected  about how many documents will be found
+	 */
+	public ScoreAccumulator(DocumentTable documents, int expected) {
+		this.documents = documents;
+		this.dense = expected * 4L >= documents.size();
+		int capacity = dense ? documents.size() : Integer.highestOneBit(Math.max(8, expected) * 2 - 1) << 1;
+		this.keys = new int[capacity];
+		this.counts = new int[capacity];
+		this.scores = new double[capacity];
+		this.size = 0;
+	}
+
+	/**
+	 * Adds every posting of a word to the documents it appears in.
+	 *
+	 * @param postings the postings of the word
+	 * @param term     how to score the word
+	 */
+	public void add(Postings postings, Scorer.Term term) {
+		for (int i = 0; i < postings.size(); i++) {
+			int document = postings.document(i);
+			int frequency = postings.frequency(i);
+			int slot = slot(document);
+			counts[slot] += frequency;
+			scores[slot] = term.score(scores[slot], counts[slot], frequency, documents.count(document));
+		}
+	}
+
+	/**
+	 * Adds every posting of several words, splitting the document ids into
+	 * ranges that the workers of a work queue and this thread add up at the same
+	 * time. Each range adds the lists in the same order as {@link #add}, so the
+	 * scores come out the same. Ranges are claimed one at a time, and this thread
+	 * adds up any that no worker has started, so it finishes even if every worker
+	 * is busy and it is called from one of them.
+	 *
+	 * @param lists the postings of every word
+	 * @param terms how to score each word
+	 * @param queue the work queue to split the ranges with
+	 * @throws IllegalStateException if each document does not have its own slot
+	 * @throws CancellationException  if the thread is interrupted while waiting
+	 *                                for the workers, in which case the scores
+	 *                                are incomplete
+	 */
+	public void addAll(List<? extends Postings> lists, Scorer.Term[] terms, WorkQueue queue) {
+		if (!dense) {
+			throw new IllegalStateException("Only a dense accumulator can be split by document.");
+		}
+		Ranges ranges = new Ranges(lists, terms, (queue.size() + 1) * RANGES);
+		for (int i = 0; i < queue.size(); i++) {
+			queue.execute(ranges);
+		}
+		ranges.run();
+		ranges.finish();
+		size += ranges.found;
+	}
+
+	/**
+	 * Adds the postings of several words to the documents in a range of ids.
+	 *
+	 * @param lists the postings of every word
+	 * @param terms how to score each word
+	 * @param from  the first document id of the range
+	 * @param to    one past the last document id of the range
+	 * @return the number of documents found for the first time
+	 */
+	private int addRange(List<? extends Postings> lists, Scorer.Term[] terms, int from, int to) {
+		int found = 0;
+		for (int i = 0; i < terms.length; i++) {
+			Postings postings = lists.get(i);
+			Scorer.Term term = terms[i];
+			for (int j = postings.advance(from, 0); j < postings.size(); j++) {
+				int document = postings.document(j);
+				if (document >= to) {
+					break;
+				}
+				if (keys[document] == 0) {
+					keys[document] = document + 1;
+					found++;
+				}
+				int frequency = postings.frequency(j);
+				counts[document] += frequency;
+				scores[document] = term.score(scores[document], counts[document], frequency, documents.count(document));
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Finds the slot of a document, adding it if it is not there yet.
+	 *
+	 * @param document the document id
+	 * @return the slot of the document
+	 */
+	private int slot(int document) {
+		if (dense) {
+			if (keys[document] == 0) {
+				keys[document] = document + 1;
+				size++;
+			}
+			return document;
+		}
+		int mask = keys.length - 1;
+		int slot = hash(document) & mask;
+		while (keys[slot] != 0) {
+			if (keys[slot] == document + 1) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		if ((size + 1) * 2 > keys.length) {
+			grow();
+			return slot(document);
+		}
+		keys[slot] = document + 1;
+		size++;
+		return slot;
+	}
+
+	/**
+	 * Doubles the size of the table.
+	 */
+	private void grow() {
+		int[] oldKeys = keys;
+		int[] oldCounts = counts;
+		double[] oldScores = scores;
+		keys = new int[oldKeys.length * 2];
+		counts = new int[keys.length];
+		scores = new double[keys.length];
+		int mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != 0) {
+				int slot = hash(oldKeys[i] - 1) & mask;
+				while (keys[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				counts[slot] = oldCounts[i];
+				scores[slot] = oldScores[i];
+			}
+		}
+	}
+
+	/**
+	 * Spreads the bits of a document id so nearby ids land in different slots.
+	 *
+	 * @param document the document id
+	 * @return the hash of the id
+	 */
+	private static int hash(int document) {
+		int hash = document * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Checks whether each document has its own slot, so the documents can be
+	 * split into ranges and added up at the same time.
+	 *
+	 * @return true if the arrays are indexed by document id
+	 */
+	public boolean isDense() {
+		return dense;
+	}
+
+	/**
+	 * Returns the number of documents found.
+	 *
+	 * @return the number of documents
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Creates a result for every document found.
+	 *
+	 * @return array list of Results in no particular order
+	 */
+	public ArrayList<Result> results() {
+		ArrayList<Result> results = new ArrayList<Result>(size);
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != 0) {
+				results.add(new Result(documents, keys[i] - 1, counts[i], scores[i]));
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Picks the best results with a bounded heap, only creating a result for a
+	 * document that makes it into the heap.
+	 *
+	 * @param k the most results to keep
+	 * @return array list of the best k results, sorted
+	 */
+	public ArrayList<Result> top(int k) {
+		if (k <= 0) {
+			return new ArrayList<Result>();
+		}
+		PriorityQueue<Result> heap = new PriorityQueue<Result>(k + 1, Collections.reverseOrder());
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] == 0) {
+				continue;
+			}
+			if (heap.size() < k) {
+				heap.add(new Result(documents, keys[i] - 1, counts[i], scores[i]));
+			} else if (compare(i, heap.peek()) < 0) {
+				heap.poll();
+				heap.add(new Result(documents, keys[i] - 1, counts[i], scores[i]));
+			}
+		}
+		ArrayList<Result> best = new ArrayList<Result>(heap);
+		Collections.sort(best);
+		return best;
+	}
+
+	/**
+	 * Compares the document in a slot to a result the same way
+	 * {@link Result#compareTo(Result)} does, without creating a result for it.
+	 *
+	 * @param slot  the slot of the document
+	 * @param other the result to compare to
+	 * @return a negative number if the document comes first
+	 */
+	private int compare(int slot, Result other) {
+		int compared = Double.compare(other.getScore(), scores[slot]);
+		if (compared != 0) {
+			return compared;
+		}
+		compared = Integer.compare(other.getCount(), counts[slot]);
+		if (compared != 0) {
+			return compared;
+		}
+		return documents.location(keys[slot] - 1).compareToIgnoreCase(other.getLocation());
+	}
+
+	/**
+	 * Ranges of document ids handed out one at a time to whichever thread asks
+	 * next
+	 */
+	private class Ranges implements Runnable {
+		/**
+		 * the postings of every word
+		 */
+		private final List<? extends Postings> lists;
+
+		/**
+		 * how to score each word
+		 */
+		private final Scorer.Term[] terms;
+
+		/**
+		 * number of ranges
+		 */
+		private final int total;
+
+		/**
+		 * the next range to hand out
+		 */
+		private int next;
+
+		/**
+		 * number of ranges added up
+		 */
+		private int finished;
+
+		/**
+		 * number of documents found across every range
+		 */
+		private int found;
+
+		/**
+		 * Constructor method
+		 *
+		 * @param lists the postings of every word
+		 * @param terms how to score each word
+		 * @param total number of ranges to split the ids into
+		 */
+		public Ranges(List<? extends Postings> lists, Scorer.Term[] terms, int total) {
+			this.lists = lists;
+			this.terms = terms;
+			this.total = Math.max(1, Math.min(total, keys.length));
+			this.next = 0;
+			this.finished = 0;
+			this.found = 0;
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				int range;
+				synchronized (this) {
+					if (next == total) {
+						return;
+					}
+					range = next++;
+				}
+				int added = 0;
+				try {
+					added = addRange(lists, terms, (int) ((long) keys.length * range / total),
+							(int) ((long) keys.length * (range + 1) / total));
+				} finally {
+					synchronized (this) {
+						found += added;
+						finished++;
+						if (finished == total) {
+							notifyAll();
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * Waits for every range to be added up.
+		 *
+		 * @throws CancellationException if the thread is interrupted while
+		 *                               waiting, leaving it interrupted
+		 */
+		public synchronized void finish() {
+			while (finished < total) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new CancellationException("Interrupted while adding up scores");
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package edu.usfca.cs272;
+
+/**
+ * Decides how results are scored. A scorer is asked once per query for a
+ * {@link Term} for each matching word, which can work out everything that only
+ * depends on the word and the index ahead of time, so scoring each document is
+ * only arithmetic on the counts found in the postings.
+ *
+ * Scores are built up one word at a time, and every scorer other than
+ * {@link #FREQUENCY} adds up a separate score for each word.
+ *
+ * @author kyle
+ */
+public interface Scorer {
+	/** Times the query words appear over the word count of the document. */
+	public static final Scorer FREQUENCY = new FrequencyScorer();
+
+	/** Word frequency in the document weighted by how rare the word is. */
+	public static final Scorer TF_IDF = new TfIdfScorer();
+
+	/** Okapi BM25 with the usual parameters. */
+	public static final Scorer BM25 = new Bm25Scorer(Bm25Scorer.K1, Bm25Scorer.B);
+
+	/**
+	 * Prepares to score the documents one word of a query appears in.
+	 *
+	 * @param matches   number of documents the word appears in
+	 * @param documents the document table of the index
+	 * @return the term used to score the word's postings
+	 */
+	public Term term(int matches, DocumentTable documents);
+
+	/**
+	 * Returns the scorer with a name, as used by the -scorer flag.
+	 *
+	 * @param name frequency, tfidf or bm25, in any case
+	 * @return the scorer, or null if there is none with that name
+	 */
+	public static Scorer of(String name) {
+		if (name.equalsIgnoreCase("frequency")) {
+			return FREQUENCY;
+		} else if (name.equalsIgnoreCase("tfidf")) {
+			return TF_IDF;
+		} else if (name.equalsIgnoreCase("bm25")) {
+			return BM25;
+		}
+		return null;
+	}
+
+	/**
+	 * Scores the documents a single word appears in.
+	 */
+	public interface Term {
+		/**
+		 * Returns the score of a document after this word is found in it.
+		 *
+		 * @param score     the score of the document so far
+		 * @param count     times the query words appear in the document, counting
+		 *                  this word
+		 * @param frequency times this word appears in the document
+		 * @param length    the word count of the document
+		 * @return the new score
+		 */
+		public double score(double score, int count, int frequency, int length);
+
+		/**
+		 * Returns the most this word can add to the score of a single document,
+		 * used to skip documents that cannot make the best results. Only
+		 * meaningful when scores are added up one word at a time.
+		 *
+		 * @param postings  the postings of the word
+		 * @param documents the document table the postings refer to
+		 * @return an upper bound on the score of the word in any document
+		 */
+		public default double bound(Postings postings, DocumentTable documents) {
+			double bound = 0;
+			for (int i = 0; i < postings.size(); i++) {
+				int frequency = postings.frequency(i);
+				bound = Math.max(bound, score(0, frequency, frequency, documents.count(postings.document(i))));
+			}
+			return bound;
+		}
+	}
+}
@@ -9,9 +9,11 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
-import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.text.StringSubstitutor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import edu.usfca.cs272.InvertedIndex.Result;
 import jakarta.servlet.ServletException;
@@ -33,6 +35,14 @@ public class SearchServlet extends HttpServlet {
 
 	/** The title to use for this webpage. */
 	private static final String TITLE = "Search Engine";
+	/** The most results to show for a search. */
+	private static final int RESULTS = 50;
+	/** The most bytes of results to cache. */
+	private static final long CACHE = 16 * 1024 * 1024;
+
+	/** Logger used for this class. */
+	private static final Logger log = LogManager.getLogger();
+
 	/** Template for HTML. **/
 	private final String htmlTemplate;
 
@@ -42,6 +52,12 @@ public class SearchServlet extends HttpServlet {
 	 */
 	private final MultiThreadInvertedIndex index;
 
+	/** Results of recent searches. */
+	private final ResultCache cache;
+
+	/** Searches still running, shared by identical requests. */
+	private final SingleFlight<ArrayList<Result>> flights;
+
 	/** Base path with HTML templates. */
 	private static final Path BASE = Path.of("src", "main", "resources",
 			"html");
@@ -59,18 +75,39 @@ public class SearchServlet extends HttpServlet {
 	public SearchServlet(MultiThreadInvertedIndex index) throws IOException {
 		htmlTemplate = Files.readString(BASE.resolve("index.html"), UTF_8);
 		this.index = index;
+		this.cache = new ResultCache(CACHE);
+		this.flights = new SingleFlight<ArrayList<Result>>();
 	}
+
 	@Override
 	protected void doGet(HttpServletRequest request,
 			HttpServletResponse response) throws ServletException, IOException {
 		String queryvalue = request.getParameter("query");
 		queryvalue = queryvalue == null ? "" : queryvalue;
-		queryvalue = StringEscapeUtils.escapeHtml4(queryvalue);
-		ArrayList<Result> results = this.index
-				.search(TextFileStemmer.uniqueStems(queryvalue), false);
+		String scorervalue = request.getParameter("scorer");
+		Scorer named = scorervalue == null ? null : Scorer.of(scorervalue);
+		scorervalue = named == null ? "frequency" : scorervalue.toLowerCase();
+		Scorer scorer = named == null ? Scorer.FREQUENCY : named;
+		BooleanQuery query = QueryParserInterface.query(queryvalue);
+		Set<String> stems = query == null ? QueryParserInterface.stems(queryvalue) : null;
+		String key = query != null ? scorervalue + " boolean " + query.toString()
+				: scorervalue + " plain " + QueryParserInterface.joined(stems);
+		long generation = this.index.generation();
+		ArrayList<Result> results = cache.get(key, generation);
+		if (results == null) {
+			results = flights.run(generation + " " + key, () -> {
+				InvertedIndex snapshot = this.index.snapshot();
+				ArrayList<Result> found = query != null ? snapshot.search(query, false, RESULTS, scorer)
+						: snapshot.search(stems, false, RESULTS, scorer);
+				cache.put(key, generation, found);
+				return found;
+			});
+		}
+		log.debug("Result cache: {}", cache);
 		Map<String, String> values = new HashMap<>();
 		values.put("title", TITLE);
 		values.put("thread", Thread.currentThread().getName());
+		values.put("cache", cache.toString());
 		// setup form
 		values.put("method", "GET");
 		values.put("action", request.getServletPath());
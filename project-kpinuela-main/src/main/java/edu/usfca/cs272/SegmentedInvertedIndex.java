@@ -0,0 +1,566 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A thread safe Inverted Index made of immutable segments. New documents go
+ * into a small in-memory buffer, and once the buffer holds enough postings it
+ * is compacted into a {@link FrozenInvertedIndex} segment. Segments are grouped
+ * into tiers by size, and whenever a tier fills up its segments are merged into
+ * one larger segment in the background on the {@link WorkQueue}.
+ *
+ * Every segment and the buffer share the same document table, so document ids
+ * mean the same thing everywhere and searches can run over each segment and add
+ * up the results. The write lock is only held to add to the buffer, to flush it
+ * and to swap in merged segments, so no single add or merge holds it for longer
+ * than it takes to compact one buffer.
+ *
+ * @author kyle
+ */
+public class SegmentedInvertedIndex extends MultiThreadInvertedIndex {
+	/**
+	 * The default number of postings the buffer holds before it is flushed
+	 */
+	public static final int DEFAULT = 1 << 14;
+
+	/**
+	 * The default number of segments in a tier before they are merged
+	 */
+	public static final int FACTOR = 4;
+
+	/**
+	 * The work queue merges run on
+	 */
+	private final WorkQueue queue;
+
+	/**
+	 * Number of postings the buffer holds before it is flushed
+	 */
+	private final int flushSize;
+
+	/**
+	 * Number of segments in a tier before they are merged
+	 */
+	private final int factor;
+
+	/**
+	 * New documents that have not been flushed yet
+	 */
+	private InvertedIndex buffer;
+
+	/**
+	 * Number of postings in the buffer
+	 */
+	private int buffered;
+
+	/**
+	 * Flushed segments; the list is replaced instead of changed
+	 */
+	private volatile List<FrozenInvertedIndex> segments;
+
+	/**
+	 * Segments that are being merged
+	 */
+	private final Set<FrozenInvertedIndex> merging;
+
+	/**
+	 * Initializes a segmented index with the default flush size.
+	 *
+	 * @param queue the work queue to merge segments on
+	 */
+	public SegmentedInvertedIndex(WorkQueue queue) {
+		this(queue, DEFAULT, FACTOR);
+	}
+
+	/**
+	 * Initializes a segmented index.
+	 *
+	 * @param queue     the work queue to merge segments on
+	 * @param flushSize number of postings the buffer holds before it is flushed
+	 * @param factor    number of segments in a tier before they are merged;
+	 *                  should be at least 2
+	 */
+	public SegmentedInvertedIndex(WorkQueue queue, int flushSize, int factor) {
+		super();
+		this.queue = queue;
+		this.flushSize = flushSize;
+		this.factor = factor;
+		this.buffer = new InvertedIndex(documents());
+		this.buffered = 0;
+		this.segments = Collections.emptyList();
+		this.merging = Collections.newSetFromMap(new HashMap<FrozenInvertedIndex, Boolean>());
+	}
+
+	@Override
+	public void add(String word, String path, int value) throws IOException {
+		lock().writeLock().lock();
+		try {
+			checkNotFrozen();
+			Postings postings = buffer.postings(word);
+			int before = postings == null ? 0 : postings.size();
+			buffer.add(word, path, value);
+			buffered += buffer.postings(word).size() - before;
+			if (buffered >= flushSize) {
+				flush();
+			}
+		} finally {
+			lock().writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void addAll(InvertedIndex local) {
+		int postings = 0;
+		for (Postings list : local.terms().values()) {
+			postings += list.size();
+		}
+		lock().writeLock().lock();
+		try {
+			checkNotFrozen();
+			buffer.addAll(local);
+			buffered += postings;
+			if (buffered >= flushSize) {
+				flush();
+			}
+		} finally {
+			lock().writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Compacts the buffer into a new segment and starts any merges that are due.
+	 */
+	public void flush() {
+		lock().writeLock().lock();
+		try {
+			if (buffered == 0) {
+				return;
+			}
+			ArrayList<FrozenInvertedIndex> list = new ArrayList<FrozenInvertedIndex>(segments);
+			list.add(new FrozenInvertedIndex(buffer.terms(), documents()));
+			segments = Collections.unmodifiableList(list);
+			buffer = new InvertedIndex(documents());
+			buffered = 0;
+			mergeTiers();
+		} finally {
+			lock().writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Publishes the flushed segments as they are plus the buffer compacted into
+	 * one more segment. Segments never change, so only the buffer is copied and
+	 * adds only wait for that. The document table is copied so the snapshot only
+	 * counts the documents it has.
+	 */
+	@Override
+	public synchronized long publish() {
+		if (isFrozen()) {
+			return super.publish();
+		}
+		Snapshot snapshot;
+		lock().readLock().lock();
+		try {
+			ArrayList<FrozenInvertedIndex> parts = new ArrayList<FrozenInvertedIndex>(segments);
+			if (buffered > 0) {
+				parts.add(new FrozenInvertedIndex(buffer.terms(), documents()));
+			}
+			snapshot = new Snapshot(parts, new DocumentTable(documents()));
+		} finally {
+			lock().readLock().unlock();
+		}
+		snapshot.parallel(this);
+		return publish(snapshot);
+	}
+
+	/**
+	 * Returns the number of flushed segments.
+	 *
+	 * @return number of segments
+	 */
+	public int segments() {
+		return segments.size();
+	}
+
+	@Override
+	public void clear() {
+		lock().writeLock().lock();
+		try {
+			super.clear();
+			buffer = new InvertedIndex(documents());
+			buffered = 0;
+			segments = Collections.emptyList();
+			merging.clear();
+		} finally {
+			lock().writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Adds up the results of the buffer and every segment. Other scoring models
+	 * weigh each word by the number of documents it appears in, which is split
+	 * between the parts, so they search the merged postings of each word instead.
+	 */
+	@Override
+	public ArrayList<Result> search(Set<String> queryStems, boolean exact, Scorer scorer) {
+		if (isFrozen() || scorer != Scorer.FREQUENCY) {
+			return super.search(queryStems, exact, scorer);
+		}
+		ArrayList<Result> resultList = fanOut(queryStems, exact);
+		Collections.sort(resultList);
+		return resultList;
+	}
+
+	/**
+	 * Copies the buffer's postings under the read lock, then picks the best
+	 * results over them and the postings of every segment.
+	 */
+	@Override
+	public ArrayList<Result> search(Set<String> queryStems, boolean exact, int k, Scorer scorer) {
+		if (isFrozen() || scorer != Scorer.FREQUENCY) {
+			return super.search(queryStems, exact, k, scorer);
+		}
+		ArrayList<Postings> lists = new ArrayList<Postings>();
+		List<FrozenInvertedIndex> segments;
+		lock().readLock().lock();
+		try {
+			segments = this.segments;
+			for (Postings postings : buffer.lists(queryStems, exact)) {
+				lists.add(new PostingList(postings));
+			}
+		} finally {
+			lock().readLock().unlock();
+		}
+		for (FrozenInvertedIndex segment : segments) {
+			lists.addAll(segment.lists(queryStems, exact));
+		}
+		return best(lists, k, scorer);
+	}
+
+	/**
+	 * Searches the buffer and every segment and adds up the results. The buffer
+	 * is searched and the segments are picked under the read lock, and the
+	 * segments are searched after it is released since they never change.
+	 *
+	 * @param queryStems stemmed from queries
+	 * @param exact      type of search
+	 * @return array list of Results in no particular order
+	 */
+	private ArrayList<Result> fanOut(Set<String> queryStems, boolean exact) {
+		ScoreAccumulator accumulator;
+		List<FrozenInvertedIndex> segments;
+		lock().readLock().lock();
+		try {
+			accumulator = new ScoreAccumulator(documents(), 64);
+			segments = this.segments;
+			searchPart(buffer, queryStems, exact, accumulator);
+		} finally {
+			lock().readLock().unlock();
+		}
+		for (FrozenInvertedIndex segment : segments) {
+			searchPart(segment, queryStems, exact, accumulator);
+		}
+		return accumulator.results();
+	}
+
+	/**
+	 * Adds the results of one part of the index to the results so far.
+	 *
+	 * @param part        the buffer or a segment
+	 * @param queryStems  stemmed from queries
+	 * @param exact       type of search
+	 * @param accumulator the counts and scores so far
+	 */
+	private void searchPart(InvertedIndex part, Set<String> queryStems, boolean exact,
+			ScoreAccumulator accumulator) {
+		for (Postings postings : part.lists(queryStems, exact)) {
+			accumulator.add(postings, Scorer.FREQUENCY.term(postings.size(), documents()));
+		}
+	}
+
+	/**
+	 * Merges the postings of the word from the buffer and every segment.
+	 */
+	@Override
+	protected Postings postings(String word) {
+		return postings(parts(), word);
+	}
+
+	/**
+	 * Merges the postings of every matching word from the buffer and every
+	 * segment.
+	 */
+	@Override
+	protected List<Postings> prefix(String prefix) {
+		return new ArrayList<Postings>(combine(parts(), prefix).values());
+	}
+
+	/**
+	 * Adds up the counts of the buffer and every segment. A word found in more
+	 * than one of them is counted once for each, which only makes the estimate
+	 * a little high.
+	 */
+	@Override
+	protected void estimate(String stem, boolean exact, QueryPlanner.Estimate estimate) {
+		for (InvertedIndex part : parts()) {
+			part.estimate(stem, exact, estimate);
+		}
+	}
+
+	/**
+	 * Merges the words of the buffer and every segment in sorted order. The
+	 * buffer is not copied, so the lock must stay held while they are used.
+	 */
+	@Override
+	protected Map<String, ? extends Postings> terms() {
+		return combine(parts(), "");
+	}
+
+	/**
+	 * Merges the range of words with the prefix from the buffer and every
+	 * segment. The buffer is not copied, so the lock must stay held while they
+	 * are used.
+	 */
+	@Override
+	protected Map<String, ? extends Postings> terms(String prefix) {
+		return combine(parts(), prefix);
+	}
+
+	/**
+	 * Returns every segment followed by the buffer.
+	 *
+	 * @return the parts of the index
+	 */
+	private List<InvertedIndex> parts() {
+		ArrayList<InvertedIndex> parts = new ArrayList<InvertedIndex>(segments);
+		parts.add(buffer);
+		return parts;
+	}
+
+	/**
+	 * Merges the postings of a word from several parts of the index.
+	 *
+	 * @param parts segments or the buffer
+	 * @param word  the word
+	 * @return the merged postings, or null if no part has the word
+	 */
+	private static Postings postings(List<? extends InvertedIndex> parts, String word) {
+		ArrayList<Postings> lists = new ArrayList<Postings>();
+		for (InvertedIndex part : parts) {
+			Postings postings = part.postings(word);
+			if (postings != null) {
+				lists.add(postings);
+			}
+		}
+		if (lists.isEmpty()) {
+			return null;
+		}
+		return lists.size() == 1 ? lists.get(0) : PostingList.merge(lists);
+	}
+
+	/**
+	 * Merges the words that start with a prefix from several parts of the index,
+	 * visiting only each part's sorted range of those words. Postings of words
+	 * found in only one part are used as is.
+	 *
+	 * @param parts  segments or the buffer
+	 * @param prefix prefix of the words; empty for every word
+	 * @return the words mapped to their merged postings, in sorted order
+	 */
+	private static TreeMap<String, Postings> combine(List<? extends InvertedIndex> parts, String prefix) {
+		TreeMap<String, ArrayList<Postings>> found = new TreeMap<String, ArrayList<Postings>>();
+		for (InvertedIndex part : parts) {
+			for (Entry<String, ? extends Postings> entry : part.terms(prefix).entrySet()) {
+				found.putIfAbsent(entry.getKey(), new ArrayList<Postings>(1));
+				found.get(entry.getKey()).add(entry.getValue());
+			}
+		}
+		TreeMap<String, Postings> merged = new TreeMap<String, Postings>();
+		for (Entry<String, ArrayList<Postings>> entry : found.entrySet()) {
+			ArrayList<Postings> lists = entry.getValue();
+			merged.put(entry.getKey(), lists.size() == 1 ? lists.get(0) : PostingList.merge(lists));
+		}
+		return merged;
+	}
+
+	/**
+	 * Returns the tier of a segment: segments up to {@code factor} times the flush
+	 * size are tier 0, up to {@code factor} times that are tier 1, and so on.
+	 *
+	 * @param segment the segment
+	 * @return the tier of the segment
+	 */
+	private int tier(FrozenInvertedIndex segment) {
+		int tier = 0;
+		long limit = (long) flushSize * factor;
+		while (segment.postingCount() >= limit) {
+			limit *= factor;
+			tier++;
+		}
+		return tier;
+	}
+
+	/**
+	 * Starts a merge for every tier that has enough segments that are not already
+	 * being merged. Must be called while holding the write lock.
+	 */
+	private void mergeTiers() {
+		TreeMap<Integer, ArrayList<FrozenInvertedIndex>> tiers = new TreeMap<Integer, ArrayList<FrozenInvertedIndex>>();
+		for (FrozenInvertedIndex segment : segments) {
+			if (!merging.contains(segment)) {
+				int tier = tier(segment);
+				tiers.putIfAbsent(tier, new ArrayList<FrozenInvertedIndex>());
+				tiers.get(tier).add(segment);
+			}
+		}
+		for (ArrayList<FrozenInvertedIndex> tier : tiers.values()) {
+			if (tier.size() >= factor) {
+				List<FrozenInvertedIndex> group = new ArrayList<FrozenInvertedIndex>(tier.subList(0, factor));
+				merging.addAll(group);
+				queue.execute(new Task(group));
+			}
+		}
+	}
+
+	/**
+	 * Throws an exception if the index has been frozen.
+	 *
+	 * @throws IllegalStateException if the index is frozen
+	 */
+	private void checkNotFrozen() {
+		if (isFrozen()) {
+			throw new IllegalStateException("Index is frozen");
+		}
+	}
+
+	/**
+	 * Task class to merge a group of segments into one
+	 */
+	private class Task implements Runnable {
+		/**
+		 * segments to merge
+		 */
+		private final List<FrozenInvertedIndex> group;
+
+		/**
+		 * Constructor Method
+		 *
+		 * @param group segments to merge
+		 */
+		public Task(List<FrozenInvertedIndex> group) {
+			this.group = group;
+		}
+
+		@Override
+		public void run() {
+			FrozenInvertedIndex merged = new FrozenInvertedIndex(combine(group, ""), documents());
+			lock().writeLock().lock();
+			try {
+				if (!segments.containsAll(group)) {
+					return;
+				}
+				ArrayList<FrozenInvertedIndex> list = new ArrayList<FrozenInvertedIndex>(segments.size());
+				for (FrozenInvertedIndex segment : segments) {
+					if (segment == group.get(0)) {
+						list.add(merged);
+					} else if (!group.contains(segment)) {
+						list.add(segment);
+					}
+				}
+				segments = Collections.unmodifiableList(list);
+				merging.removeAll(group);
+				mergeTiers();
+			} finally {
+				lock().writeLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * A published snapshot: an immutable list of segments that share the
+	 * snapshot's documents. Nothing in it changes, so it is searched without
+	 * locking, the same way as a single {@link FrozenInvertedIndex}.
+	 */
+	private static class Snapshot extends InvertedIndex {
+		/**
+		 * the segments of the snapshot
+		 */
+		private final List<FrozenInvertedIndex> parts;
+
+		/**
+		 * Constructor Method
+		 *
+		 * @param parts     the segments of the snapshot
+		 * @param documents the documents of every segment
+		 */
+		public Snapshot(List<FrozenInvertedIndex> parts, DocumentTable documents) {
+			super(documents);
+			this.parts = Collections.unmodifiableList(parts);
+		}
+
+		/**
+		 * Not supported, the snapshot is read-only.
+		 *
+		 * @throws UnsupportedOperationException always
+		 */
+		@Override
+		public void add(String word, String path, int value) {
+			throw new UnsupportedOperationException("Index is frozen");
+		}
+
+		/**
+		 * Not supported, the snapshot is read-only.
+		 *
+		 * @throws UnsupportedOperationException always
+		 */
+		@Override
+		public void addAll(InvertedIndex local) {
+			throw new UnsupportedOperationException("Index is frozen");
+		}
+
+		/**
+		 * Not supported, the snapshot is read-only.
+		 *
+		 * @throws UnsupportedOperationException always
+		 */
+		@Override
+		public void clear() {
+			throw new UnsupportedOperationException("Index is frozen");
+		}
+
+		@Override
+		protected Postings postings(String word) {
+			return SegmentedInvertedIndex.postings(parts, word);
+		}
+
+		@Override
+		protected List<Postings> prefix(String prefix) {
+			return new ArrayList<Postings>(combine(parts, prefix).values());
+		}
+
+		@Override
+		protected void estimate(String stem, boolean exact, QueryPlanner.Estimate estimate) {
+			for (FrozenInvertedIndex part : parts) {
+				part.estimate(stem, exact, estimate);
+			}
+		}
+
+		@Override
+		protected Map<String, ? extends Postings> terms() {
+			return combine(parts, "");
+		}
+
+		@Override
+		protected Map<String, ? extends Postings> terms(String prefix) {
+			return combine(parts, prefix);
+		}
+	}
+}
@@ -1,12 +1,8 @@
 package edu.usfca.cs272;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Iterator;
@@ -15,6 +11,8 @@ import java.util.Map;
 /**
  * Outputs several simple data structures in "pretty" JSON format where newlines
  * are used to separate elements and nested elements are indented using tabs.
+ * Files written to a path can be made compact or compressed instead with a
+ * {@link JsonFormat}.
  *
  * Warning: This class is not thread-safe. If multiple threads access this class
  * concurrently, access must be synchronized externally.
@@ -38,11 +36,13 @@ public class SimpleJsonWriter {
 		writer.write("[");
 		writer.write("\n");
 		if (iterate.hasNext()) {
-			writeIndent(iterate.next().toString(), writer, indent + 1);
+			writeIndent(writer, indent + 1);
+			writeInt(iterate.next(), writer);
 			while (iterate.hasNext()) {
 				writer.write(",");
 				writer.write("\n");
-				writeIndent(iterate.next().toString(), writer, indent + 1);
+				writeIndent(writer, indent + 1);
+				writeInt(iterate.next(), writer);
 			}
 			writer.write("\n");
 		}
@@ -66,13 +66,15 @@ public class SimpleJsonWriter {
 		if (iterate.hasNext()) {
 			String key = iterate.next();
 			writeQuote(key, writer, indent + 1);
-			writer.write(": " + elements.get(key));
+			writer.write(": ");
+			writeInt(elements.get(key), writer);
 			while (iterate.hasNext()) {
 				writer.write(",");
 				writer.write("\n");
 				String next = iterate.next();
 				writeQuote(next, writer, indent + 1);
-				writer.write(": " + elements.get(next));
+				writer.write(": ");
+				writeInt(elements.get(next), writer);
 			}
 			writer.write("\n");
 		}
@@ -126,7 +128,7 @@ public class SimpleJsonWriter {
 	 * @see #writeArray(Collection, Writer, int)
 	 */
 	public static void writeArray(Collection<Integer> elements, Path path) throws IOException {
-		try (BufferedWriter writer = Files.newBufferedWriter(path, UTF_8)) {
+		try (JsonChannelWriter writer = JsonFormat.PRETTY.open(path)) {
 			writeArray(elements, writer, 0);
 		}
 	}
@@ -141,7 +143,22 @@ public class SimpleJsonWriter {
 	 * @see #writeObject(Map, Writer, int)
 	 */
 	public static void writeObject(Map<String, Integer> elements, Path path) throws IOException {
-		try (BufferedWriter writer = Files.newBufferedWriter(path, UTF_8)) {
+		writeObject(elements, path, JsonFormat.PRETTY);
+	}
+
+	/**
+	 * Writes the elements as a JSON object to file in the given format.
+	 *
+	 * @param elements the elements to write
+	 * @param path     the file path to use
+	 * @param format   how to format and compress the file
+	 * @throws IOException if an IO error occurs
+	 *
+	 * @see #writeObject(Map, Writer, int)
+	 */
+	public static void writeObject(Map<String, Integer> elements, Path path, JsonFormat format)
+			throws IOException {
+		try (JsonChannelWriter writer = format.open(path)) {
 			writeObject(elements, writer, 0);
 		}
 	}
@@ -157,7 +174,7 @@ public class SimpleJsonWriter {
 	 */
 	public static void writeNestedArray(Map<String, ? extends Collection<Integer>> elements, Path path)
 			throws IOException {
-		try (BufferedWriter writer = Files.newBufferedWriter(path, UTF_8)) {
+		try (JsonChannelWriter writer = JsonFormat.PRETTY.open(path)) {
 			writeNestedArray(elements, writer, 0);
 		}
 	}
@@ -243,7 +260,8 @@ public class SimpleJsonWriter {
 
 	/**
 	 * Indents and then writes the text element surrounded by {@code " "} quotation
-	 * marks.
+	 * marks, escaping any quotation marks, backslashes and control characters in
+	 * it so phrase queries still make valid JSON.
 	 *
 	 * @param element the element to write
 	 * @param writer  the writer to use
@@ -253,7 +271,53 @@ public class SimpleJsonWriter {
 	public static void writeQuote(String element, Writer writer, int indent) throws IOException {
 		writeIndent(writer, indent);
 		writer.write('"');
-		writer.write(element);
+		int start = 0;
+		for (int i = 0; i < element.length(); i++) {
+			char c = element.charAt(i);
+			if (c == '"' || c == '\\' || c < 0x20) {
+				writer.write(element, start, i - start);
+				if (c == '"' || c == '\\') {
+					writer.write('\\');
+					writer.write(c);
+				} else {
+					writer.write(String.format("\\u%04x", (int) c));
+				}
+				start = i + 1;
+			}
+		}
+		writer.write(element, start, element.length() - start);
 		writer.write('"');
 	}
+
+	/**
+	 * Writes an int, straight into the buffer if the writer is a
+	 * {@link JsonChannelWriter}.
+	 *
+	 * @param value  the int to write
+	 * @param writer the writer to use
+	 * @throws IOException if an IO error occurs
+	 */
+	public static void writeInt(int value, Writer writer) throws IOException {
+		if (writer instanceof JsonChannelWriter) {
+			((JsonChannelWriter) writer).writeInt(value);
+		} else {
+			writer.write(Integer.toString(value));
+		}
+	}
+
+	/**
+	 * Writes a score with eight digits after the decimal point, straight into the
+	 * buffer if the writer is a {@link JsonChannelWriter}.
+	 *
+	 * @param score  the score to write
+	 * @param writer the writer to use
+	 * @throws IOException if an IO error occurs
+	 */
+	public static void writeScore(double score, Writer writer) throws IOException {
+		if (writer instanceof JsonChannelWriter) {
+			((JsonChannelWriter) writer).writeScore(score);
+		} else {
+			writer.write(String.format("%.8f", score));
+		}
+	}
 }
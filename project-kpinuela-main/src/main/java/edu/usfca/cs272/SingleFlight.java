@@ -0,0 +1,96 @@
+package edu.usfca.cs272;
+
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Shares the work of identical requests that run at the same time. The first
+ * thread to ask for a key does the work, and every thread that asks for the
+ * same key before it is done waits for that result instead of doing the work
+ * again. Once the work is done the key is forgotten, so a later request does
+ * the work again; keep the result somewhere else first if it should be reused.
+ *
+ * @param <T> the type of result
+ *
+ * @author kyle
+ */
+public class SingleFlight<T> {
+	/**
+	 * results still being worked on by key
+	 */
+	private final HashMap<String, CompletableFuture<T>> flights;
+
+	/**
+	 * number of requests that waited on another thread instead of doing the work
+	 */
+	private long shared;
+
+	/**
+	 * Creates an empty group of requests.
+	 */
+	public SingleFlight() {
+		this.flights = new HashMap<String, CompletableFuture<T>>();
+		this.shared = 0;
+	}
+
+	/**
+	 * Returns the result for a key, doing the work only if no other thread is
+	 * already doing it.
+	 *
+	 * @param key  the request, written the same way every time it is made
+	 * @param work the work to do if no other thread is already doing it
+	 * @return the result of the work, which may be shared with other threads
+	 * @throws RuntimeException if the work threw one, in every thread that
+	 *                          waited on it
+	 */
+	public T run(String key, Supplier<T> work) {
+		CompletableFuture<T> flight;
+		CompletableFuture<T> mine = null;
+		synchronized (flights) {
+			flight = flights.get(key);
+			if (flight == null) {
+				mine = new CompletableFuture<T>();
+				flights.put(key, mine);
+				flight = mine;
+			} else {
+				shared++;
+			}
+		}
+		if (mine != null) {
+			try {
+				mine.complete(work.get());
+			} catch (RuntimeException | Error e) {
+				mine.completeExceptionally(e);
+			} finally {
+				synchronized (flights) {
+					flights.remove(key);
+				}
+			}
+		}
+		try {
+			return flight.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the number of requests that waited on another thread instead of
+	 * doing the work.
+	 *
+	 * @return the number of shared requests
+	 */
+	public long shared() {
+		synchronized (flights) {
+			return shared;
+		}
+	}
+}
@@ -0,0 +1,479 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A thread safe Inverted Index that splits its words into stripes by hash, each
+ * with its own lock. Adding a local index only locks the stripes its words fall
+ * in, and looking up a word only locks that word's stripe, so crawler workers
+ * no longer serialize on a single write lock.
+ *
+ * Lookups hand out the postings in the stripes without copying them and mark
+ * them shared, and an add to shared postings changes a copy instead. The lock
+ * inherited from {@link MultiThreadInvertedIndex} is only taken to freeze or
+ * clear the whole index, which lock every stripe for writing as well, and adds
+ * check whether the index is frozen again once they hold their stripe's lock.
+ *
+ * @author kyle
+ */
+public class StripedInvertedIndex extends MultiThreadInvertedIndex {
+	/** The default number of stripes to use when not specified. */
+	public static final int DEFAULT = 16;
+
+	/**
+	 * The stripes of the index
+	 */
+	private final Stripe[] stripes;
+
+	/**
+	 * Guards changes to the document table
+	 */
+	private final Object documentLock;
+
+	/**
+	 * Initializes a striped index with the default number of stripes.
+	 */
+	public StripedInvertedIndex() {
+		this(DEFAULT);
+	}
+
+	/**
+	 * Initializes a striped index.
+	 *
+	 * @param stripes number of stripes; should be greater than 0
+	 */
+	public StripedInvertedIndex(int stripes) {
+		super();
+		this.stripes = new Stripe[stripes];
+		for (int i = 0; i < stripes; i++) {
+			this.stripes[i] = new Stripe();
+		}
+		this.documentLock = new Object();
+	}
+
+	@Override
+	public void add(String word, String path, int value) throws IOException {
+		checkNotFrozen();
+		int document;
+		synchronized (documentLock) {
+			checkNotFrozen();
+			DocumentTable documents = documents();
+			document = documents.id(path);
+			if (document < 0) {
+				document = documents.add(path, value);
+			} else if (documents.count(document) < value) {
+				documents.setCount(document, value);
+			}
+		}
+		Stripe stripe = stripe(word);
+		stripe.lock.writeLock().lock();
+		try {
+			checkNotFrozen();
+			PostingList postings = stripe.writable(word);
+			if (postings == null) {
+				postings = new PostingList();
+				stripe.map.put(word, postings);
+			}
+			postings.add(document).add(value);
+		} finally {
+			stripe.lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void addAll(InvertedIndex local) {
+		checkNotFrozen();
+		int[] remap;
+		synchronized (documentLock) {
+			checkNotFrozen();
+			remap = documents().addAll(local.documents());
+		}
+		ArrayList<ArrayList<Entry<String, ? extends Postings>>> buckets = new ArrayList<>(stripes.length);
+		for (int i = 0; i < stripes.length; i++) {
+			buckets.add(new ArrayList<Entry<String, ? extends Postings>>());
+		}
+		for (Entry<String, ? extends Postings> entry : local.terms().entrySet()) {
+			buckets.get(index(entry.getKey())).add(entry);
+		}
+		for (int i = 0; i < stripes.length; i++) {
+			if (buckets.get(i).isEmpty()) {
+				continue;
+			}
+			stripes[i].lock.writeLock().lock();
+			try {
+				checkNotFrozen();
+				for (Entry<String, ? extends Postings> entry : buckets.get(i)) {
+					PostingList postings = stripes[i].writable(entry.getKey());
+					if (postings == null) {
+						stripes[i].map.put(entry.getKey(), PostingList.of(entry.getValue(), remap));
+					} else {
+						postings.addAll(entry.getValue(), remap);
+					}
+				}
+			} finally {
+				stripes[i].lock.writeLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * Adds do not take the shared lock, so every stripe and the document table
+	 * are locked as well while the index is compacted.
+	 */
+	@Override
+	public void freeze() {
+		lock().writeLock().lock();
+		lockAllForWriting();
+		try {
+			synchronized (documentLock) {
+				super.freeze();
+			}
+		} finally {
+			unlockAllForWriting();
+			lock().writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void clear() {
+		lock().writeLock().lock();
+		lockAllForWriting();
+		try {
+			synchronized (documentLock) {
+				super.clear();
+				for (Stripe stripe : stripes) {
+					stripe.map.clear();
+				}
+			}
+		} finally {
+			unlockAllForWriting();
+			lock().writeLock().unlock();
+		}
+	}
+
+	/**
+	 * The document table is locked as well while the snapshot is copied.
+	 */
+	@Override
+	public long publish() {
+		lockAll();
+		try {
+			synchronized (documentLock) {
+				return super.publish();
+			}
+		} finally {
+			unlockAll();
+		}
+	}
+
+	/**
+	 * Does not lock anything. Lookups lock only the stripe they look in, and
+	 * reads of every word lock every stripe themselves.
+	 */
+	@Override
+	protected void lockRead() {
+	}
+
+	@Override
+	protected void unlockRead() {
+	}
+
+	@Override
+	public void indexWrite(Path path, JsonFormat format) throws IOException {
+		lockAll();
+		try {
+			super.indexWrite(path, format);
+		} finally {
+			unlockAll();
+		}
+	}
+
+	@Override
+	public void indexWrite(Path path, WorkQueue queue, JsonFormat format) throws IOException {
+		lockAll();
+		try {
+			super.indexWrite(path, queue, format);
+		} finally {
+			unlockAll();
+		}
+	}
+
+	@Override
+	public void save(Path path) throws IOException {
+		lockAll();
+		try {
+			super.save(path);
+		} finally {
+			unlockAll();
+		}
+	}
+
+	/**
+	 * The document table is locked as well while the counts are written, after
+	 * the stripes so the locks are always taken in the same order.
+	 */
+	@Override
+	public void countWrite(Path path, JsonFormat format) throws IOException {
+		lockAll();
+		try {
+			synchronized (documentLock) {
+				super.countWrite(path, format);
+			}
+		} finally {
+			unlockAll();
+		}
+	}
+
+	@Override
+	public int size() {
+		lockAll();
+		try {
+			return super.size();
+		} finally {
+			unlockAll();
+		}
+	}
+
+	@Override
+	public String toString() {
+		lockAll();
+		try {
+			return super.toString();
+		} finally {
+			unlockAll();
+		}
+	}
+
+	@Override
+	public Set<String> get() {
+		lockAll();
+		try {
+			return super.get();
+		} finally {
+			unlockAll();
+		}
+	}
+
+	@Override
+	public Set<String> get(String word, String location) {
+		lockAll();
+		try {
+			return super.get(word, location);
+		} finally {
+			unlockAll();
+		}
+	}
+
+	/**
+	 * Returns the postings in the word's stripe without copying them. They are
+	 * marked shared, so adds change a copy instead once the lock is released.
+	 */
+	@Override
+	protected Postings postings(String word) {
+		Stripe stripe = stripe(word);
+		stripe.lock.readLock().lock();
+		try {
+			PostingList postings = stripe.map.get(word);
+			if (postings != null) {
+				postings.share();
+			}
+			return postings;
+		} finally {
+			stripe.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the postings in the stripes without copying them, marked shared the
+	 * same way as in {@link #postings(String)}.
+	 */
+	@Override
+	protected List<Postings> prefix(String prefix) {
+		TreeMap<String, Postings> matches = new TreeMap<String, Postings>();
+		for (Stripe stripe : stripes) {
+			stripe.lock.readLock().lock();
+			try {
+				for (Entry<String, PostingList> entry : range(stripe.map, prefix).entrySet()) {
+					entry.getValue().share();
+					matches.put(entry.getKey(), entry.getValue());
+				}
+			} finally {
+				stripe.lock.readLock().unlock();
+			}
+		}
+		return new ArrayList<Postings>(matches.values());
+	}
+
+	/**
+	 * Counts the stem in each stripe it can be in under the stripe's read lock.
+	 */
+	@Override
+	protected void estimate(String stem, boolean exact, QueryPlanner.Estimate estimate) {
+		if (exact) {
+			Stripe stripe = stripe(stem);
+			stripe.lock.readLock().lock();
+			try {
+				PostingList postings = stripe.map.get(stem);
+				if (postings != null) {
+					estimate.add(postings.size());
+				}
+			} finally {
+				stripe.lock.readLock().unlock();
+			}
+			return;
+		}
+		for (Stripe stripe : stripes) {
+			stripe.lock.readLock().lock();
+			try {
+				for (PostingList postings : range(stripe.map, stem).values()) {
+					estimate.add(postings.size());
+				}
+			} finally {
+				stripe.lock.readLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * Merges the words of every stripe in sorted order. The postings are not
+	 * copied, so every stripe must stay locked while they are used.
+	 */
+	@Override
+	protected Map<String, ? extends Postings> terms() {
+		TreeMap<String, PostingList> merged = new TreeMap<String, PostingList>();
+		for (Stripe stripe : stripes) {
+			merged.putAll(stripe.map);
+		}
+		return merged;
+	}
+
+	/**
+	 * Merges the range of words with the prefix from every stripe, in sorted
+	 * order. The postings are not copied, so every stripe must stay locked while
+	 * they are used.
+	 */
+	@Override
+	protected Map<String, ? extends Postings> terms(String prefix) {
+		TreeMap<String, PostingList> merged = new TreeMap<String, PostingList>();
+		for (Stripe stripe : stripes) {
+			merged.putAll(range(stripe.map, prefix));
+		}
+		return merged;
+	}
+
+	/**
+	 * Returns the stripe index of a word.
+	 *
+	 * @param word the word
+	 * @return index of the stripe the word belongs to
+	 */
+	private int index(String word) {
+		return Math.floorMod(word.hashCode(), stripes.length);
+	}
+
+	/**
+	 * Returns the stripe of a word.
+	 *
+	 * @param word the word
+	 * @return the stripe the word belongs to
+	 */
+	private Stripe stripe(String word) {
+		return stripes[index(word)];
+	}
+
+	/**
+	 * Locks every stripe for reading, always in the same order.
+	 */
+	private void lockAll() {
+		for (Stripe stripe : stripes) {
+			stripe.lock.readLock().lock();
+		}
+	}
+
+	/**
+	 * Unlocks every stripe locked by {@link #lockAll()}.
+	 */
+	private void unlockAll() {
+		for (int i = stripes.length - 1; i >= 0; i--) {
+			stripes[i].lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Locks every stripe for writing, always in the same order.
+	 */
+	private void lockAllForWriting() {
+		for (Stripe stripe : stripes) {
+			stripe.lock.writeLock().lock();
+		}
+	}
+
+	/**
+	 * Unlocks every stripe locked by {@link #lockAllForWriting()}.
+	 */
+	private void unlockAllForWriting() {
+		for (int i = stripes.length - 1; i >= 0; i--) {
+			stripes[i].lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Throws an exception if the index has been frozen. Adds check again once
+	 * they hold a stripe or the document table, since the index is frozen while
+	 * every one of those is locked.
+	 *
+	 * @throws IllegalStateException if the index is frozen
+	 */
+	private void checkNotFrozen() {
+		if (isFrozen()) {
+			throw new IllegalStateException("Index is frozen");
+		}
+	}
+
+	/**
+	 * One stripe of words and the lock guarding it
+	 */
+	private static class Stripe {
+		/**
+		 * Words in this stripe mapped to their postings
+		 */
+		private final TreeMap<String, PostingList> map;
+
+		/**
+		 * Lock guarding this stripe
+		 */
+		private final SimpleReadWriteLock lock;
+
+		/**
+		 * Initializes an empty stripe.
+		 */
+		public Stripe() {
+			this.map = new TreeMap<String, PostingList>();
+			this.lock = new SimpleReadWriteLock();
+		}
+
+		/**
+		 * Returns the postings of a word that can be added to, first replacing them
+		 * with a copy if they are shared with a reader. Must be called while holding
+		 * the write lock.
+		 *
+		 * @param word the word
+		 * @return the postings, or null if the word is not in the stripe
+		 */
+		public PostingList writable(String word) {
+			PostingList postings = map.get(word);
+			if (postings != null && postings.isShared()) {
+				postings = new PostingList(postings);
+				map.put(word, postings);
+			}
+			return postings;
+		}
+	}
+}
@@ -0,0 +1,319 @@
+package edu.usfca.cs272;
+
+import java.util.Arrays;
+
+/**
+ * A read-only sorted dictionary of words, where each word's id is its index in
+ * sorted order. Words are front-coded in blocks: the first word of each block
+ * is kept as a {@link String}, and every other word only stores the length of
+ * the prefix it shares with the word before it followed by the rest of its
+ * characters in one shared {@code char[]}. Sorted stems share long prefixes, so
+ * this takes a fraction of the memory of one {@link String} per word.
+ *
+ * Every word that starts with a prefix is a contiguous range of ids, found with
+ * a binary search over the first words of the blocks and a scan of at most one
+ * block at each end.
+ *
+ * @author kyle
+ */
+public class TermDictionary {
+	/** Number of words in each block. */
+	public static final int BLOCK = 16;
+
+	/**
+	 * First word of each block
+	 */
+	private final String[] heads;
+
+	/**
+	 * Start of each block's front-coded words in the data, after the first word
+	 */
+	private final int[] offsets;
+
+	/**
+	 * Shared prefix length, suffix length and suffix of every word that does not
+	 * start a block, back to back
+	 */
+	private final char[] data;
+
+	/**
+	 * Number of words
+	 */
+	private final int size;
+
+	/**
+	 * Length of the longest word
+	 */
+	private final int longest;
+
+	/**
+	 * Builds a dictionary.
+	 *
+	 * @param words the words in sorted order, without duplicates
+	 */
+	public TermDictionary(String[] words) {
+		this.size = words.length;
+		int blocks = (size + BLOCK - 1) / BLOCK;
+		this.heads = new String[blocks];
+		this.offsets = new int[blocks];
+		char[] data = new char[16];
+		int length = 0;
+		int longest = 0;
+		for (int i = 0; i < size; i++) {
+			String word = words[i];
+			longest = Math.max(longest, word.length());
+			if (i % BLOCK == 0) {
+				heads[i / BLOCK] = word;
+				offsets[i / BLOCK] = length;
+				continue;
+			}
+			String previous = words[i - 1];
+			int shared = 0;
+			int limit = Math.min(previous.length(), word.length());
+			while (shared < limit && previous.charAt(shared) == word.charAt(shared)) {
+				shared++;
+			}
+			int suffix = word.length() - shared;
+			if (length + suffix + 6 > data.length) {
+				data = Arrays.copyOf(data, Math.max(length + suffix + 6, data.length * 2));
+			}
+			length = encode(data, length, shared);
+			length = encode(data, length, suffix);
+			word.getChars(shared, word.length(), data, length);
+			length += suffix;
+		}
+		this.data = Arrays.copyOf(data, length);
+		this.longest = longest;
+	}
+
+	/**
+	 * Returns the number of words.
+	 *
+	 * @return number of words
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the word with an id.
+	 *
+	 * @param id the id of the word
+	 * @return the word
+	 */
+	public String term(int id) {
+		if (id % BLOCK == 0) {
+			return heads[id / BLOCK];
+		}
+		Cursor cursor = new Cursor(id / BLOCK);
+		for (int i = 0; i < id % BLOCK; i++) {
+			cursor.next();
+		}
+		return new String(cursor.word, 0, cursor.length);
+	}
+
+	/**
+	 * Finds the id of a word.
+	 *
+	 * @param word the word to look for
+	 * @return the id of the word, or (-(insertion point) - 1) if it is not in the
+	 *         dictionary
+	 */
+	public int find(String word) {
+		int id = lower(word);
+		if (id < size && term(id).equals(word)) {
+			return id;
+		}
+		return -(id + 1);
+	}
+
+	/**
+	 * Returns the id of the first word that is not less than the given word.
+	 *
+	 * @param word the word
+	 * @return the first id at or after the word, or {@link #size()} if there is
+	 *         none
+	 */
+	public int lower(String word) {
+		return search(word, false, 0, heads.length - 1);
+	}
+
+	/**
+	 * Returns the id just past the last word that starts with a prefix. Together
+	 * with {@link #lower(String)} this gives the range of every word with the
+	 * prefix.
+	 *
+	 * @param prefix the prefix
+	 * @return the id after the last word with the prefix
+	 */
+	public int upper(String prefix) {
+		return search(prefix, true, 0, heads.length - 1);
+	}
+
+	/**
+	 * Returns the id just past the last word that starts with a prefix, starting
+	 * from the first word with the prefix. Short ranges are found without a
+	 * second binary search.
+	 *
+	 * @param prefix the prefix
+	 * @param lower  the id returned by {@link #lower(String)} for the prefix
+	 * @return the id after the last word with the prefix
+	 */
+	public int upper(String prefix, int lower) {
+		if (lower >= size) {
+			return size;
+		}
+		int block = lower / BLOCK;
+		if (block + 1 < heads.length && before(heads[block + 1], prefix, true)) {
+			return search(prefix, true, block + 1, heads.length - 1);
+		}
+		return search(prefix, true, block, block);
+	}
+
+	/**
+	 * Finds the first id whose word is not before the key. Words that start with
+	 * the key count as before it when looking for the end of a prefix range.
+	 *
+	 * @param key    the word or prefix
+	 * @param prefix whether words starting with the key count as before it
+	 * @param from   the first block whose first word may not be before the key
+	 * @param to     the last block whose first word may be before the key
+	 * @return the first id whose word is not before the key
+	 */
+	private int search(String key, boolean prefix, int from, int to) {
+		int low = from;
+		int high = to;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (before(heads[middle], key, prefix)) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		if (low == from) {
+			return from * BLOCK;
+		}
+		int block = low - 1;
+		int end = Math.min((block + 1) * BLOCK, size);
+		Cursor cursor = new Cursor(block);
+		for (int id = block * BLOCK + 1; id < end; id++) {
+			cursor.next();
+			if (!cursor.before(key, prefix)) {
+				return id;
+			}
+		}
+		return end;
+	}
+
+	/**
+	 * Checks whether a word comes before a key.
+	 *
+	 * @param word   the word
+	 * @param key    the word or prefix to compare to
+	 * @param prefix whether a word starting with the key counts as before it
+	 * @return true if the word comes before the key
+	 */
+	private static boolean before(String word, String key, boolean prefix) {
+		int compare = word.compareTo(key);
+		return compare < 0 || (prefix && word.startsWith(key));
+	}
+
+	/**
+	 * Writes a length as one or more characters holding 15 bits each.
+	 *
+	 * @param data   where to write
+	 * @param offset where to start writing
+	 * @param value  the length to write
+	 * @return the offset after the written characters
+	 */
+	private static int encode(char[] data, int offset, int value) {
+		while ((value & ~0x7FFF) != 0) {
+			data[offset++] = (char) ((value & 0x7FFF) | 0x8000);
+			value >>>= 15;
+		}
+		data[offset++] = (char) value;
+		return offset;
+	}
+
+	/**
+	 * Decodes the words of a block one after another
+	 */
+	private class Cursor {
+		/**
+		 * characters of the current word
+		 */
+		private char[] word;
+
+		/**
+		 * length of the current word
+		 */
+		private int length;
+
+		/**
+		 * offset of the next front-coded word in the data
+		 */
+		private int offset;
+
+		/**
+		 * Starts at the first word of a block.
+		 *
+		 * @param block the block
+		 */
+		public Cursor(int block) {
+			String head = heads[block];
+			this.word = new char[Math.max(head.length(), 16)];
+			head.getChars(0, head.length(), word, 0);
+			this.length = head.length();
+			this.offset = offsets[block];
+		}
+
+		/**
+		 * Moves on to the next word in the block.
+		 */
+		public void next() {
+			int shared = read();
+			int suffix = read();
+			if (shared + suffix > word.length) {
+				word = Arrays.copyOf(word, longest);
+			}
+			System.arraycopy(data, offset, word, shared, suffix);
+			offset += suffix;
+			length = shared + suffix;
+		}
+
+		/**
+		 * Reads a length written by {@link TermDictionary#encode(char[], int, int)}.
+		 *
+		 * @return the length
+		 */
+		private int read() {
+			int value = 0;
+			int shift = 0;
+			char c;
+			do {
+				c = data[offset++];
+				value |= (c & 0x7FFF) << shift;
+				shift += 15;
+			} while ((c & 0x8000) != 0);
+			return value;
+		}
+
+		/**
+		 * Checks whether the current word comes before a key.
+		 *
+		 * @param key    the word or prefix to compare to
+		 * @param prefix whether a word starting with the key counts as before it
+		 * @return true if the word comes before the key
+		 */
+		public boolean before(String key, boolean prefix) {
+			int limit = Math.min(length, key.length());
+			for (int i = 0; i < limit; i++) {
+				if (word[i] != key.charAt(i)) {
+					return word[i] < key.charAt(i);
+				}
+			}
+			return length < key.length() || (prefix && length >= key.length());
+		}
+	}
+}
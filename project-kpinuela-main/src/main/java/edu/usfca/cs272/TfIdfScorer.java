@@ -0,0 +1,17 @@
+package edu.usfca.cs272;
+
+/**
+ * Scores each word by how often it appears in the document relative to the
+ * word count of the document, weighted by its inverse document frequency
+ * {@code ln(1 + documents / matches)}, so rare words count for more than words
+ * found almost everywhere.
+ *
+ * @author kyle
+ */
+public class TfIdfScorer implements Scorer {
+	@Override
+	public Term term(int matches, DocumentTable documents) {
+		double idf = Math.log(1 + (double) documents.size() / Math.max(matches, 1));
+		return (score, count, frequency, length) -> score + idf * frequency / length;
+	}
+}
@@ -12,6 +12,16 @@ import java.util.Set;
  *
  */
 public class WebCrawler {
+	/**
+	 * The most pages crawled between two snapshots
+	 */
+	public static final int PAGES = 16;
+
+	/**
+	 * The most milliseconds between two snapshots while pages are being crawled
+	 */
+	public static final long INTERVAL = 1000;
+
 	/**
 	 * A Multithreaded InvertedIndex index
 	 */
@@ -30,6 +40,32 @@ public class WebCrawler {
 	 */
 	private int max;
 
+	/**
+	 * whether to publish snapshots of the index while crawling
+	 */
+	private final boolean publish;
+
+	/**
+	 * number of pages added to the index so far
+	 */
+	private int crawled;
+
+	/**
+	 * number of pages added when the last snapshot was published
+	 */
+	private int published;
+
+	/**
+	 * when the last snapshot was published, in milliseconds
+	 */
+	private long last;
+
+	/**
+	 * the local index of each worker, or null to add each page as soon as it
+	 * is crawled
+	 */
+	private final WorkerIndexes locals;
+
 	/**
 	 * Constructor Method
 	 * 
@@ -45,10 +81,75 @@ public class WebCrawler {
 	 */
 	public WebCrawler(MultiThreadInvertedIndex index, WorkQueue queue,
 			int max) {
+		this(index, queue, max, false);
+	}
+
+	/**
+	 * Constructor Method
+	 * 
+	 * @param index
+	 *            The Inverted Index
+	 * 
+	 * @param queue
+	 *            the WorkQueue
+	 * 
+	 * @param max
+	 *            max amount
+	 * 
+	 * @param publish
+	 *            whether to publish snapshots of the index as pages are
+	 *            crawled, so it can be searched before the crawl finishes
+	 * 
+	 */
+	public WebCrawler(MultiThreadInvertedIndex index, WorkQueue queue,
+			int max, boolean publish) {
+		this(index, queue, max, publish, 0);
+	}
+
+	/**
+	 * Constructor Method
+	 * 
+	 * @param index
+	 *            The Inverted Index
+	 * 
+	 * @param queue
+	 *            the WorkQueue
+	 * 
+	 * @param max
+	 *            max amount
+	 * 
+	 * @param publish
+	 *            whether to publish snapshots of the index as pages are
+	 *            crawled, so it can be searched before the crawl finishes
+	 * 
+	 * @param flush
+	 *            number of positions each worker adds to its own local index
+	 *            before adding it to the shared one, or 0 to add each page as
+	 *            soon as it is crawled; ignored when publishing, since
+	 *            snapshots need every page crawled so far
+	 * 
+	 */
+	public WebCrawler(MultiThreadInvertedIndex index, WorkQueue queue,
+			int max, boolean publish, int flush) {
 		this.index = index;
 		this.queue = queue;
 		this.max = max;
 		this.urls = new HashSet<URL>();
+		this.publish = publish;
+		this.crawled = 0;
+		this.published = 0;
+		this.last = System.currentTimeMillis();
+		this.locals = flush > 0 && !publish ? new WorkerIndexes(index, flush) : null;
+	}
+
+	/**
+	 * Crawls up to the max amount of URLs starting from the seed
+	 * 
+	 * @param url
+	 *            the seed url
+	 */
+	public void webCrawl(URL url) {
+		webCrawl(url, max);
 	}
 	/**
 	 * @param url
@@ -60,6 +161,33 @@ public class WebCrawler {
 		urls.add(url);
 		queue.execute(new Task(url));
 		queue.finish();
+		if (locals != null) {
+			locals.finish();
+		}
+		if (publish) {
+			index.publish();
+		}
+	}
+
+	/**
+	 * Counts a page added to the index, publishing a new snapshot once
+	 * {@link #PAGES} pages have been added or {@link #INTERVAL} milliseconds have
+	 * passed since the last one, so searches never fall far behind the crawl.
+	 */
+	private void crawled() {
+		boolean due;
+		synchronized (this) {
+			crawled++;
+			long now = System.currentTimeMillis();
+			due = crawled - published >= PAGES || now - last >= INTERVAL;
+			if (due) {
+				published = crawled;
+				last = now;
+			}
+		}
+		if (due) {
+			index.publish();
+		}
 	}
 
 	/**
@@ -108,7 +236,14 @@ public class WebCrawler {
 				}
 				count++;
 			}
-			index.addAll(local);
+			if (locals != null) {
+				locals.add(local);
+			} else {
+				index.addAll(local);
+			}
+			if (publish) {
+				crawled();
+			}
 		}
 	}
 }
@@ -0,0 +1,123 @@
+package edu.usfca.cs272;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Keeps one local index for each thread that builds a shared index, so a
+ * worker adds every document it processes to the same local index without
+ * taking the write lock of the shared index, instead of adding each document
+ * to the shared index on its own. A local index is only added to the shared
+ * index once it holds enough positions, which keeps memory bounded, and
+ * whatever is left at the end is combined with
+ * {@link InvertedIndex#merge(java.util.List)} and added in one go.
+ *
+ * @author kyle
+ */
+public class WorkerIndexes {
+	/**
+	 * The default number of positions a local index holds before it is added
+	 */
+	public static final int FLUSH = 1 << 20;
+
+	/**
+	 * the shared index
+	 */
+	private final MultiThreadInvertedIndex index;
+
+	/**
+	 * number of positions a local index holds before it is added
+	 */
+	private final int flush;
+
+	/**
+	 * the local index of each thread
+	 */
+	private final HashMap<Thread, Local> locals;
+
+	/**
+	 * Constructor method
+	 *
+	 * @param index the shared index
+	 * @param flush number of positions a local index holds before it is added to
+	 *              the shared index
+	 */
+	public WorkerIndexes(MultiThreadInvertedIndex index, int flush) {
+		this.index = index;
+		this.flush = flush;
+		this.locals = new HashMap<Thread, Local>();
+	}
+
+	/**
+	 * Adds the index of one document to the local index of the calling thread,
+	 * adding the local index to the shared index if it is big enough.
+	 * Postings are moved rather than copied, so the document index should not be
+	 * used afterwards.
+	 *
+	 * @param document the index of the document
+	 */
+	public void add(InvertedIndex document) {
+		Thread thread = Thread.currentThread();
+		Local local;
+		synchronized (locals) {
+			local = locals.get(thread);
+			if (local == null) {
+				local = new Local();
+				locals.put(thread, local);
+			}
+		}
+		local.index.addAll(document);
+		DocumentTable documents = document.documents();
+		for (int i = 0; i < documents.size(); i++) {
+			local.positions += documents.count(i);
+		}
+		if (local.positions >= flush) {
+			synchronized (locals) {
+				locals.remove(thread);
+			}
+			index.addAll(local.index);
+		}
+	}
+
+	/**
+	 * Merges every local index left and adds the result to the shared index.
+	 * Must only be called once every document has been added.
+	 */
+	public void finish() {
+		ArrayList<InvertedIndex> left = new ArrayList<InvertedIndex>();
+		synchronized (locals) {
+			for (Local local : locals.values()) {
+				left.add(local.index);
+			}
+			locals.clear();
+		}
+		if (left.size() == 1) {
+			index.addAll(left.get(0));
+		} else if (!left.isEmpty()) {
+			index.addAll(InvertedIndex.merge(left));
+		}
+	}
+
+	/**
+	 * A local index and the number of positions in it
+	 */
+	private static class Local {
+		/**
+		 * the local index
+		 */
+		private final InvertedIndex index;
+
+		/**
+		 * number of positions in the local index
+		 */
+		private long positions;
+
+		/**
+		 * Constructor method
+		 */
+		public Local() {
+			this.index = new InvertedIndex();
+			this.positions = 0;
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package edu.usfca.cs272;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that an index saved by {@link BinaryIndexWriter} opens again as the
+ * same {@link MappedInvertedIndex}, and that files which are not index files
+ * are turned away.
+ *
+ * @author kyle
+ */
+public class BinaryIndexTest {
+	/**
+	 * Saves and opens an index with no words or documents.
+	 *
+	 * @param directory a temporary directory for the files
+	 * @throws IOException if the files cannot be read or written
+	 */
+	@Test
+	public void testEmpty(@TempDir Path directory) throws IOException {
+		Path path = directory.resolve("index.bin");
+		InvertedIndex index = new InvertedIndex();
+		index.save(path);
+
+		MappedInvertedIndex mapped = new MappedInvertedIndex(path);
+		assertEquals(0, mapped.size());
+		assertTrue(mapped.get().isEmpty());
+		assertFalse(mapped.contains("hello"));
+		assertEquals(index.toString(), mapped.toString());
+		assertTrue(mapped.search(Set.of("hello"), true).isEmpty());
+		assertTrue(mapped.search(Set.of("hello"), false).isEmpty());
+	}
+
+	/**
+	 * Saves and opens an index of one document, checking its words, positions,
+	 * word count and search results all come back the same.
+	 *
+	 * @param directory a temporary directory for the files
+	 * @throws IOException if the files cannot be read or written
+	 */
+	@Test
+	public void testOneDocument(@TempDir Path directory) throws IOException {
+		Path path = directory.resolve("index.bin");
+		String location = "input/café.txt";
+		InvertedIndex index = new InvertedIndex();
+		String[] words = { "hello", "world", "hello", "café", "help", "hello", "world" };
+		for (int i = 0; i < words.length; i++) {
+			index.add(words[i], location, i + 1);
+		}
+		index.save(path);
+
+		MappedInvertedIndex mapped = new MappedInvertedIndex(path);
+		assertEquals(index.toString(), mapped.toString());
+		assertEquals(index.get(), mapped.get());
+		assertEquals(index.get("hello"), mapped.get("hello"));
+		assertEquals(words.length, mapped.getWordCount(location));
+		assertEquals(3, mapped.size("hello", location));
+		assertTrue(mapped.contains("café", location, 4));
+		assertFalse(mapped.contains("café", location, 5));
+
+		assertResults(index.search(Set.of("hello", "café"), true), mapped.search(Set.of("hello", "café"), true));
+		assertResults(index.search(Set.of("hel"), false), mapped.search(Set.of("hel"), false));
+		assertTrue(mapped.search(Set.of("goodbye"), true).isEmpty());
+	}
+
+	/**
+	 * Checks that a file starting with the wrong magic number is not opened.
+	 *
+	 * @param directory a temporary directory for the files
+	 * @throws IOException if the files cannot be read or written
+	 */
+	@Test
+	public void testBadMagic(@TempDir Path directory) throws IOException {
+		Path path = saved(directory);
+		overwrite(path, 0, BinaryIndexWriter.MAGIC + 1);
+		IOException e = assertThrows(IOException.class, () -> new MappedInvertedIndex(path));
+		assertTrue(e.getMessage().startsWith("Not an index file"), e.getMessage());
+	}
+
+	/**
+	 * Checks that a file of another format version is not opened.
+	 *
+	 * @param directory a temporary directory for the files
+	 * @throws IOException if the files cannot be read or written
+	 */
+	@Test
+	public void testBadVersion(@TempDir Path directory) throws IOException {
+		Path path = saved(directory);
+		overwrite(path, 4, BinaryIndexWriter.VERSION + 1);
+		IOException e = assertThrows(IOException.class, () -> new MappedInvertedIndex(path));
+		assertTrue(e.getMessage().startsWith("Unsupported index version"), e.getMessage());
+	}
+
+	/**
+	 * Checks that a file too short to hold the header is not opened.
+	 *
+	 * @param directory a temporary directory for the files
+	 * @throws IOException if the files cannot be read or written
+	 */
+	@Test
+	public void testTruncated(@TempDir Path directory) throws IOException {
+		Path path = directory.resolve("index.bin");
+		Files.write(path, new byte[] { 0x53, 0x49, 0x44, 0x58 });
+		assertThrows(IOException.class, () -> new MappedInvertedIndex(path));
+	}
+
+	/**
+	 * Saves a small index to a file.
+	 *
+	 * @param directory the directory to save in
+	 * @return the saved file
+	 * @throws IOException if the file cannot be written
+	 */
+	private static Path saved(Path directory) throws IOException {
+		Path path = directory.resolve("index.bin");
+		InvertedIndex index = new InvertedIndex();
+		index.add("hello", "hello.txt", 1);
+		index.save(path);
+		return path;
+	}
+
+	/**
+	 * Overwrites one int of a file.
+	 *
+	 * @param path     the file
+	 * @param position where the int starts
+	 * @param value    the new int
+	 * @throws IOException if the file cannot be written
+	 */
+	private static void overwrite(Path path, int position, int value) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.allocate(4).putInt(0, value), position);
+		}
+	}
+
+	/**
+	 * Checks that two lists of results have the same locations, counts and
+	 * scores in the same order.
+	 *
+	 * @param expected the results of the original index
+	 * @param actual   the results of the opened index
+	 */
+	private static void assertResults(ArrayList<InvertedIndex.Result> expected, ArrayList<InvertedIndex.Result> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getLocation(), actual.get(i).getLocation());
+			assertEquals(expected.get(i).getCount(), actual.get(i).getCount());
+			assertEquals(expected.get(i).getScore(), actual.get(i).getScore());
+		}
+	}
+}
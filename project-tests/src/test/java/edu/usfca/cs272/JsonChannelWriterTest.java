@@ -0,0 +1,119 @@
+package edu.usfca.cs272;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that numbers written digit by digit come out the same as the strings
+ * they replace.
+ *
+ * @author kyle
+ */
+public class JsonChannelWriterTest {
+	/**
+	 * Checks scores on and around the edges of the fast path and of rounding.
+	 *
+	 * @throws IOException if the writer fails
+	 */
+	@Test
+	public void testScoreEdges() throws IOException {
+		double[] scores = { 0, -0.0, 1, 0.5, 0.123456785, 0.123456775, 2.000000005, 1.999999995, 0.000000005,
+				0.000000015, 0.00000001, 12345.678901235, 99999.99999999, 99999.999999994, 99999.999999995,
+				99999.999999996, 99999.999999999, Math.nextDown(1e5), 1e5, Math.nextUp(1e5), 123456789.123456785,
+				-0.000000005, -0.5, -1.123456785, -99999.999999995, Double.MIN_VALUE, Double.MAX_VALUE,
+				Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		for (double score : scores) {
+			assertScore(score);
+			assertScore(Math.nextDown(score));
+			assertScore(Math.nextUp(score));
+		}
+	}
+
+	/**
+	 * Checks scores just below, on and just above halfway between two results
+	 * with eight digits after the decimal point.
+	 *
+	 * @throws IOException if the writer fails
+	 */
+	@Test
+	public void testScoreHalfway() throws IOException {
+		Random random = new Random(272);
+		for (int i = 0; i < 10000; i++) {
+			double score = (random.nextInt(1000000) * 100000000L + random.nextInt(100000000) + 0.5) / 1e8 / 10;
+			assertScore(score);
+			assertScore(Math.nextDown(score));
+			assertScore(Math.nextUp(score));
+		}
+	}
+
+	/**
+	 * Checks random scores over every range the writer handles differently.
+	 *
+	 * @throws IOException if the writer fails
+	 */
+	@Test
+	public void testScoreRandom() throws IOException {
+		Random random = new Random(272);
+		for (int i = 0; i < 10000; i++) {
+			assertScore(random.nextDouble());
+			assertScore(random.nextDouble() * 1e5);
+			assertScore(random.nextDouble() * 1e9);
+			assertScore(-random.nextDouble() * 10);
+			assertScore(random.nextInt(100) / 7.0);
+		}
+	}
+
+	/**
+	 * Checks ints at the edges and at random.
+	 *
+	 * @throws IOException if the writer fails
+	 */
+	@Test
+	public void testInt() throws IOException {
+		int[] values = { 0, 1, -1, 9, 10, -10, 99, 100, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE + 1 };
+		for (int value : values) {
+			assertEquals(Integer.toString(value), written(value));
+		}
+		Random random = new Random(272);
+		for (int i = 0; i < 10000; i++) {
+			int value = random.nextInt();
+			assertEquals(Integer.toString(value), written(value));
+		}
+	}
+
+	/**
+	 * Checks that a score comes out the same as with {@link String#format}.
+	 *
+	 * @param score the score
+	 * @throws IOException if the writer fails
+	 */
+	private static void assertScore(double score) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (JsonChannelWriter writer = new JsonChannelWriter(Channels.newChannel(out), false)) {
+			writer.writeScore(score);
+		}
+		assertEquals(String.format("%.8f", score), out.toString(StandardCharsets.UTF_8), Double.toString(score));
+	}
+
+	/**
+	 * Writes an int the way the writer does.
+	 *
+	 * @param value the int
+	 * @return what was written
+	 * @throws IOException if the writer fails
+	 */
+	private static String written(int value) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (JsonChannelWriter writer = new JsonChannelWriter(Channels.newChannel(out), false)) {
+			writer.writeInt(value);
+		}
+		return out.toString(StandardCharsets.UTF_8);
+	}
+}
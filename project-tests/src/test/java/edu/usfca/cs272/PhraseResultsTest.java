@@ -0,0 +1,233 @@
+package edu.usfca.cs272;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that the results file of a phrase query is valid JSON.
+ *
+ * @author kyle
+ */
+public class PhraseResultsTest {
+	/**
+	 * Searches a phrase and parses the results file, checking the phrase comes
+	 * back as the key with its quotes escaped.
+	 *
+	 * @param directory a temporary directory for the files
+	 * @throws IOException if the files cannot be read or written
+	 */
+	@Test
+	public void testPhraseResults(@TempDir Path directory) throws IOException {
+		Path text = directory.resolve("gpl.txt");
+		Path queries = directory.resolve("queries.txt");
+		Path results = directory.resolve("results.json");
+		Files.writeString(text, "The General Public License is a general license for the public.");
+		Files.writeString(queries, "\"general public\" license\n");
+
+		Driver.main(new String[] { "-text", text.toString(), "-query", queries.toString(), "-results",
+				results.toString() });
+
+		Object parsed = new Parser(Files.readString(results, StandardCharsets.UTF_8)).parse();
+		assertTrue(parsed instanceof Map);
+		Map<?, ?> map = (Map<?, ?>) parsed;
+		assertTrue(map.containsKey("\"general public\" licens"), map.keySet().toString());
+		List<?> values = (List<?>) map.get("\"general public\" licens");
+		assertEquals(1, values.size());
+	}
+
+	/**
+	 * Checks that compact output keeps the spaces inside a phrase key.
+	 *
+	 * @param directory a temporary directory for the files
+	 * @throws IOException if the files cannot be read or written
+	 */
+	@Test
+	public void testCompactPhraseResults(@TempDir Path directory) throws IOException {
+		Path text = directory.resolve("gpl.txt");
+		Path queries = directory.resolve("queries.txt");
+		Path results = directory.resolve("results.json");
+		Files.writeString(text, "The General Public License is a general license for the public.");
+		Files.writeString(queries, "\"general public\" license\n");
+
+		Driver.main(new String[] { "-text", text.toString(), "-query", queries.toString(), "-results",
+				results.toString(), "-compact" });
+
+		String json = Files.readString(results, StandardCharsets.UTF_8);
+		Map<?, ?> map = (Map<?, ?>) new Parser(json).parse();
+		assertTrue(map.containsKey("\"general public\" licens"), json);
+		assertTrue(json.indexOf('\n') < 0, json);
+	}
+
+	/**
+	 * A strict parser for the subset of JSON the writers produce
+	 */
+	private static class Parser {
+		/**
+		 * the text being parsed
+		 */
+		private final String text;
+
+		/**
+		 * the next character to parse
+		 */
+		private int index;
+
+		/**
+		 * Constructor method
+		 *
+		 * @param text the text to parse
+		 */
+		public Parser(String text) {
+			this.text = text;
+			this.index = 0;
+		}
+
+		/**
+		 * Parses the whole text as one value.
+		 *
+		 * @return the value
+		 */
+		public Object parse() {
+			Object value = value();
+			space();
+			check(index == text.length(), "trailing text");
+			return value;
+		}
+
+		/**
+		 * Parses the next value.
+		 *
+		 * @return the value
+		 */
+		private Object value() {
+			space();
+			check(index < text.length(), "missing value");
+			char c = text.charAt(index);
+			if (c == '{') {
+				TreeMap<String, Object> map = new TreeMap<String, Object>();
+				index++;
+				space();
+				if (peek('}')) {
+					return map;
+				}
+				do {
+					space();
+					String key = string();
+					space();
+					expect(':');
+					map.put(key, value());
+					space();
+				} while (peek(','));
+				expect('}');
+				return map;
+			}
+			if (c == '[') {
+				ArrayList<Object> list = new ArrayList<Object>();
+				index++;
+				space();
+				if (peek(']')) {
+					return list;
+				}
+				do {
+					list.add(value());
+					space();
+				} while (peek(','));
+				expect(']');
+				return list;
+			}
+			if (c == '"') {
+				return string();
+			}
+			int start = index;
+			while (index < text.length() && "+-.0123456789eE".indexOf(text.charAt(index)) >= 0) {
+				index++;
+			}
+			check(index > start, "unexpected " + c);
+			return Double.parseDouble(text.substring(start, index));
+		}
+
+		/**
+		 * Parses a string, undoing its escapes.
+		 *
+		 * @return the string
+		 */
+		private String string() {
+			expect('"');
+			StringBuilder builder = new StringBuilder();
+			while (true) {
+				check(index < text.length(), "unterminated string");
+				char c = text.charAt(index++);
+				if (c == '"') {
+					return builder.toString();
+				}
+				check(c >= 0x20, "control character in string");
+				if (c == '\\') {
+					char escaped = text.charAt(index++);
+					if (escaped == 'u') {
+						builder.append((char) Integer.parseInt(text.substring(index, index + 4), 16));
+						index += 4;
+					} else {
+						check("\"\\/".indexOf(escaped) >= 0, "bad escape " + escaped);
+						builder.append(escaped);
+					}
+				} else {
+					builder.append(c);
+				}
+			}
+		}
+
+		/**
+		 * Skips whitespace.
+		 */
+		private void space() {
+			while (index < text.length() && Character.isWhitespace(text.charAt(index))) {
+				index++;
+			}
+		}
+
+		/**
+		 * Skips a character if it is next.
+		 *
+		 * @param c the character
+		 * @return true if it was skipped
+		 */
+		private boolean peek(char c) {
+			if (index < text.length() && text.charAt(index) == c) {
+				index++;
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Skips a character that must be next.
+		 *
+		 * @param c the character
+		 */
+		private void expect(char c) {
+			check(peek(c), "expected " + c);
+		}
+
+		/**
+		 * Fails the test if a condition does not hold.
+		 *
+		 * @param condition the condition
+		 * @param message   what went wrong
+		 */
+		private void check(boolean condition, String message) {
+			assertTrue(condition, message + " at " + index);
+		}
+	}
+}